@@ -21,6 +21,11 @@
 package com.rapidminerchina.extension;
 
 import com.rapidminer.gui.MainFrame;
+import com.rapidminer.parameter.ParameterTypeCategory;
+import com.rapidminer.parameter.ParameterTypeInt;
+import com.rapidminer.tools.ParameterService;
+import com.rapidminerchina.extension.dl4j.data.ConversionCache;
+import com.rapidminerchina.extension.dl4j.data.Precision;
 
 
 /**
@@ -41,7 +46,16 @@ public final class PluginInitDl4jExtension {
 		 * hook during start up. No initialization of the operators or renderers has taken place when
 		 * this is called.
 		 */
-		public static void initPlugin() {}
+		public static void initPlugin() {
+				ParameterService.registerParameter(new ParameterTypeInt(ConversionCache.PROPERTY_CACHE_SIZE,
+						"The maximal size in megabytes of the examples converted for the training of neural networks and kept "
+								+ "to train again on the same data, e.g. in a validation. 0 disables the cache.",
+						0, Integer.MAX_VALUE, ConversionCache.DEFAULT_CACHE_SIZE));
+				ParameterService.registerParameter(new ParameterTypeCategory(Precision.PROPERTY_PRECISION,
+						"The floating point precision neural networks are trained and scored with, unless the learner specifies another one. "
+								+ "Float halves the memory used for the examples, weights and gradients.",
+						Precision.PRECISION_NAMES, 0));
+		}
 
 		/**
 		 * This method is called during start up as the second hook. It is called before the gui of the
@@ -1,14 +1,13 @@
 package com.rapidminerchina.extension.dl4j;
 
-import com.rapidminer.example.Attribute;
 import com.rapidminer.example.Attributes;
-import com.rapidminer.example.Example;
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.example.ExampleSetFactory;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetConverter;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 
@@ -42,57 +41,8 @@ public class DL4JConvert {
 	 */
 	public static DataSet convert2DataSet(ExampleSet exampleSet, boolean convertLabel){
 		
-		int row_num = exampleSet.size();
-		
-		// construct the list of feature names
-		Attributes attributes = (Attributes) exampleSet.getAttributes();
-		List<String> featureNames = new ArrayList<String>();
-		for (Attribute attribute : attributes){
-			featureNames.add(attribute.getName());
-		}
-		
-		int feature_num = featureNames.size();
-		
-		// construct the list of labels
-		Attribute labelAttribute = (Attribute) exampleSet.getAttributes().getLabel();
-		boolean toConvertLabel = (labelAttribute != null) && convertLabel;
-		
-		List<String> labelNames = new ArrayList<String>();
-		if (toConvertLabel){
-			// the list is supposed to be in order, or at least the indices of all values are continuous natural numbers form 0
-			labelNames = (List<String>)(labelAttribute.getMapping().getValues());
-		}
-		
-		int label_num = labelNames.size();
-
-		// construct the table of features and labels
-		double[][] featuresMatrix = new double[row_num][feature_num];
-		double[][] labelsMatrix = new double[row_num][label_num];
-		
-		int counter = 0;
-		
-		for (Example e : exampleSet){
-			for (int i=0; i<feature_num; i++){
-				double d = e.getValue(attributes.get(featureNames.get(i)));
-				featuresMatrix[counter][i] = d;
-			}
-			if (toConvertLabel){
-				int l = (int) e.getLabel();
-				labelsMatrix[counter][l] = 1;
-			}
-
-			counter++;
-		}
-		
-		// build the 2d-arrays for features and labels
-		INDArray features = org.nd4j.linalg.factory.Nd4j.create(featuresMatrix);
-		INDArray labels = org.nd4j.linalg.factory.Nd4j.create(labelsMatrix);
-		
-		// construct the dataset based on the features and labels, then add names to features and labels 
-		DataSet dataSet = new DataSet(features, labels);
-		dataSet.setColumnNames(featureNames);
-		dataSet.setLabelNames(labelNames);
-		return dataSet;
+		// the attributes are resolved once, and the values are written into preallocated buffers directly
+		return new ExampleSetConverter(exampleSet, convertLabel).convert(exampleSet);
 	}
 	
 	/**
@@ -231,26 +181,36 @@ public class DL4JConvert {
 	 * A support function to retrieve the indices of the max value on each row of a 2d-array.
 	 * This method is particularly used to retrieve the indices of predicted labels from a matrix of confidences.
 	 * 
+	 * The values are read from the backing buffer of the 2d-array in one pass, following its offset and strides,
+	 * so no view of a row or a cell is created.
+	 * 
 	 * @param array the 2d-array
 	 * @return an array of indices indicating the max value on each row of the 2d-array
 	 */
 	public static int[] getMax(INDArray array){
 		
-		int[] shape = array.shape();
-		int[] maxList = new int[shape[0]]; 
-		
-		for (int i=0; i<shape[0]; i++){
-			INDArray row = array.getRow(i);
-			double max = row.getDouble(0);
-			for (int j=1; j<shape[1]; j++){
-				if (row.getDouble(j) > max){
+		int rows = array.rows();
+		int columns = array.columns();
+		int[] maxList = new int[rows];
+		
+		DataBuffer buffer = array.data();
+		int rowStride = array.stride(0);
+		int columnStride = array.stride(1);
+		int rowStart = array.offset();
+		
+		for (int i=0; i<rows; i++){
+			int index = rowStart;
+			double max = buffer.getDouble(index);
+			for (int j=1; j<columns; j++){
+				index += columnStride;
+				double value = buffer.getDouble(index);
+				if (value > max){
 					maxList[i] = j;
-					max = row.getDouble(j);
+					max = value;
 				}
 			}
+			rowStart += rowStride;
 		}
 		return maxList;
 	}
 }
-
-
@@ -0,0 +1,290 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.example.table.DataRow;
+import com.rapidminer.example.table.ExampleTable;
+import com.rapidminer.tools.ParameterService;
+
+/**
+ * The cache of the converted examples of the example tables seen in training.
+ *
+ * Validations, bagging and loops train on many views of the same example table, e.g. the folds of a cross validation.
+ * Instead of converting each view again, all rows of the underlying table are converted once
+ * for the attributes of the converter, and each view takes a copy of its rows from the cached arrays.
+ * The rows of a view are found by their data rows, thus views whose rows are not the rows of the table,
+ * and views on a small part of a table, are converted as usual.
+ *
+ * The tables are only weakly referenced, so a cached conversion is dropped with the next use of the cache
+ * once its table is no longer used, e.g. when the process ends. The least recently used conversions are dropped when the cache exceeds
+ * the size given by the setting {@link #PROPERTY_CACHE_SIZE}; a size of 0 disables the cache.
+ * The values of a table changed in place after its conversion are not noticed, as the tables are not copied.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class ConversionCache {
+
+	/**
+	 * The setting for the maximal size of the cache in megabytes.
+	 */
+	public static final String PROPERTY_CACHE_SIZE = "rapidminer.dl4j.conversion_cache_size";
+
+	/**
+	 * The default maximal size of the cache in megabytes.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	/**
+	 * The minimal fraction of the rows of a table a view must contain to convert the whole table for it.
+	 */
+	private static final double MIN_COVERAGE = 0.5;
+
+	/**
+	 * The memory the map of the rows takes per row in bytes, i.e. two slots of an identity hash map
+	 * at its usual load, and the boxed index.
+	 */
+	private static final long ROW_MAP_BYTES = 48;
+
+	/**
+	 * The cached conversions, in the order of their last use.
+	 */
+	private static final LinkedHashMap<Key, Entry> ENTRIES = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	/**
+	 * The total size of the cached conversions in bytes.
+	 */
+	private static long size = 0;
+
+	/**
+	 * The identity of a conversion, i.e. the example table, the columns converted from it and the precision.
+	 */
+	private static class Key {
+
+		private final WeakReference<ExampleTable> table;
+
+		private final int tableHash;
+
+		private final int tableSize;
+
+		private final List<Object> columns;
+
+		Key(ExampleTable table, List<Object> columns){
+			this.table = new WeakReference<ExampleTable>(table);
+			this.tableHash = System.identityHashCode(table);
+			this.tableSize = table.size();
+			this.columns = columns;
+		}
+
+		@Override
+		public int hashCode() {
+			return tableHash * 31 + columns.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)){
+				return false;
+			}
+			Key other = (Key) object;
+			ExampleTable referent = table.get();
+			return referent != null && referent == other.table.get()
+					&& tableSize == other.tableSize && columns.equals(other.columns);
+		}
+	}
+
+	/**
+	 * The converted rows of a whole table, and the index of each row in the table.
+	 */
+	private static class Entry {
+
+		private final INDArray features;
+
+		private final INDArray labels;
+
+		private final Map<DataRow, Integer> rows;
+
+		private final long size;
+
+		Entry(INDArray features, INDArray labels, Map<DataRow, Integer> rows, long size){
+			this.features = features;
+			this.labels = labels;
+			this.rows = rows;
+			this.size = size;
+		}
+	}
+
+	private ConversionCache(){
+		// utility class
+	}
+
+	/**
+	 * Retrieve the maximal size of the cache in bytes from the settings.
+	 */
+	private static long getMaximalSize(){
+		String value = ParameterService.getParameterValue(PROPERTY_CACHE_SIZE);
+		if (value == null || value.trim().isEmpty()){
+			return DEFAULT_CACHE_SIZE * 1024L * 1024L;
+		}
+		try {
+			return Math.max(Long.parseLong(value.trim()), 0) * 1024L * 1024L;
+		} catch (NumberFormatException e) {
+			return DEFAULT_CACHE_SIZE * 1024L * 1024L;
+		}
+	}
+
+	/**
+	 * Estimate the memory the conversion of a whole table takes, i.e. its arrays and the map of its rows.
+	 *
+	 * @param rows the number of rows of the table
+	 * @param columns the number of features and label columns
+	 * @return the size in bytes
+	 */
+	private static long estimateSize(int rows, int columns){
+		long width = Nd4j.dataType() == DataBuffer.Type.FLOAT ? 4 : 8;
+		return rows * (columns * width + ROW_MAP_BYTES);
+	}
+
+	/**
+	 * Convert the examples of an exampleset by copying their rows from the cached conversion of their table,
+	 * converting the whole table first if it is not cached yet.
+	 *
+	 * @param converter the converter of the attributes
+	 * @param table the example table of the exampleset to convert
+	 * @param rows the data rows of the examples to convert
+	 * @return the converted features and labels, null if the examples cannot be converted via the cache
+	 */
+	static DataSet convert(ExampleSetConverter converter, ExampleTable table, DataRow[] rows){
+
+		long maximalSize = getMaximalSize();
+		if (maximalSize == 0 || table == null || rows.length < table.size() * MIN_COVERAGE){
+			return null;
+		}
+
+		List<Object> columns = converter.getCacheColumns();
+		if (columns == null){
+			return null;
+		}
+		// the arrays are cached in the precision they were created with
+		columns.add(Nd4j.dataType());
+
+		Key key = new Key(table, columns);
+		Entry entry;
+		synchronized (ENTRIES) {
+			purge();
+			entry = ENTRIES.get(key);
+		}
+
+		if (entry == null){
+			// a table too large for the cache is not converted as a whole
+			long estimate = estimateSize(table.size(), converter.getNumFeatures() + converter.getNumLabels());
+			if (estimate > maximalSize){
+				return null;
+			}
+			entry = convertTable(converter, table, estimate);
+			synchronized (ENTRIES) {
+				Entry previous = ENTRIES.put(key, entry);
+				size += entry.size - (previous == null ? 0 : previous.size);
+				evict(maximalSize);
+			}
+		}
+
+		// the positions of the examples in the table
+		int[] indices = new int[rows.length];
+		for (int i=0; i<rows.length; i++){
+			Integer index = entry.rows.get(rows[i]);
+			if (index == null){
+				return null;
+			}
+			indices[i] = index;
+		}
+
+		return new DataSet(copyRows(entry.features, indices), copyRows(entry.labels, indices));
+	}
+
+	/**
+	 * Convert all rows of a table.
+	 */
+	private static Entry convertTable(ExampleSetConverter converter, ExampleTable table, long size){
+
+		DataRow[] rows = new DataRow[table.size()];
+		Map<DataRow, Integer> indices = new IdentityHashMap<DataRow, Integer>(rows.length);
+		for (int i=0; i<rows.length; i++){
+			rows[i] = table.getDataRow(i);
+			indices.put(rows[i], i);
+		}
+
+		return new Entry(converter.convertFeatures(rows), converter.convertLabels(rows), indices, size);
+	}
+
+	/**
+	 * Drop the conversions of the tables no longer used, and the least recently used conversions
+	 * while the cache is too large.
+	 */
+	private static void evict(long maximalSize){
+		Iterator<Map.Entry<Key, Entry>> iterator = ENTRIES.entrySet().iterator();
+		while (iterator.hasNext()){
+			Map.Entry<Key, Entry> next = iterator.next();
+			if (next.getKey().table.get() == null || size > maximalSize){
+				size -= next.getValue().size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drop the conversions of the tables no longer used, as their arrays and rows are still referenced by the cache.
+	 */
+	private static void purge(){
+		Iterator<Map.Entry<Key, Entry>> iterator = ENTRIES.entrySet().iterator();
+		while (iterator.hasNext()){
+			Map.Entry<Key, Entry> next = iterator.next();
+			if (next.getKey().table.get() == null){
+				size -= next.getValue().size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Copy the given rows of a 2d-array into a new 2d-array.
+	 */
+	private static INDArray copyRows(INDArray source, int[] indices){
+
+		int columns = source.columns();
+		INDArray result = Nd4j.create(new int[]{indices.length, columns}, 'c');
+		DataBuffer from = source.data();
+		DataBuffer to = result.data();
+		int offset = source.offset();
+		int index = result.offset();
+
+		for (int row : indices){
+			int start = offset + row * columns;
+			for (int j=0; j<columns; j++){
+				to.put(index++, from.getDouble(start + j));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Drop all cached conversions.
+	 */
+	public static void clear(){
+		synchronized (ENTRIES) {
+			ENTRIES.clear();
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,516 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.example.Attribute;
+import com.rapidminer.example.Attributes;
+import com.rapidminer.example.Example;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.table.DataRow;
+import com.rapidminer.example.table.NominalMapping;
+import com.rapidminer.operator.OperatorException;
+
+/**
+ * The conversion engine that writes the values of an exampleset into ND4J arrays.
+ *
+ * The attributes to convert are resolved once when the converter is constructed,
+ * and the values of each example are written straight into one flat, preallocated buffer
+ * in row-major order. Thus neither a name lookup per cell nor an intermediate 2d-array
+ * of doubles is needed during the conversion.
+ *
+ * The data rows of an exampleset are resolved once per conversion, so views on an example table,
+ * e.g. the folds of a validation or filtered and sampled examplesets, are walked through only once
+ * instead of once for the features and once more for the labels. The values are read from the data rows
+ * through the resolved attributes, without looking up the examples of the view again.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class ExampleSetConverter {
+
+	/**
+	 * The feature attributes, in the order of the columns of the converted features.
+	 */
+	private final Attribute[] features;
+
+	/**
+	 * The label attribute, null if the labels are not to be converted.
+	 */
+	private final Attribute label;
+
+	/**
+	 * The number of columns of the converted labels.
+	 */
+	private final int numLabels;
+	
+	/**
+	 * Whether the label is numerical, i.e. converted into a single column of its values rather than one-hot rows.
+	 */
+	private final boolean numericalLabel;
+
+	/**
+	 * The column of each value of a nominal label, null if the columns follow the mapping of the label attribute.
+	 */
+	private final int[] labelColumns;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param features the feature attributes, in the order of the columns to generate
+	 * @param label the label attribute, null if the labels are not to be converted
+	 */
+	public ExampleSetConverter(Attribute[] features, Attribute label){
+		this.features = features;
+		this.label = label;
+		this.numericalLabel = label != null && !label.isNominal();
+		this.numLabels = label == null ? 0 : (numericalLabel ? 1 : label.getMapping().size());
+		this.labelColumns = null;
+	}
+
+	/**
+	 * Constructor that places the values of a nominal label in the columns given by another mapping,
+	 * e.g. the mapping of the label the network was trained on.
+	 * Every value of the label attribute must be contained in the given mapping.
+	 *
+	 * @param features the feature attributes, in the order of the columns to generate
+	 * @param label the nominal label attribute
+	 * @param labelMapping the mapping whose indices are the columns of the converted labels
+	 */
+	public ExampleSetConverter(Attribute[] features, Attribute label, NominalMapping labelMapping){
+		this.features = features;
+		this.label = label;
+		this.numericalLabel = false;
+		this.numLabels = labelMapping.size();
+
+		List<String> values = label.getMapping().getValues();
+		this.labelColumns = new int[values.size()];
+		for (int i=0; i<labelColumns.length; i++){
+			labelColumns[i] = labelMapping.getIndex(values.get(i));
+		}
+	}
+
+	/**
+	 * Constructor that converts all regular attributes of the given exampleset.
+	 *
+	 * @param exampleSet the exampleset whose attributes are to be converted
+	 * @param convertLabel whether to convert the label column in the exampleset if there is one
+	 */
+	public ExampleSetConverter(ExampleSet exampleSet, boolean convertLabel){
+		this(exampleSet.getAttributes().createRegularAttributeArray(),
+				convertLabel ? exampleSet.getAttributes().getLabel() : null);
+	}
+
+	/**
+	 * Resolve the data rows of the examples of an exampleset in one pass,
+	 * so a view on an example table is walked through only once.
+	 *
+	 * @param exampleSet the exampleset
+	 * @return the data rows in the order of the examples
+	 */
+	public static DataRow[] resolveRows(ExampleSet exampleSet){
+		DataRow[] rows = new DataRow[exampleSet.size()];
+		int i = 0;
+		for (Example example : exampleSet){
+			rows[i++] = example.getDataRow();
+		}
+		return rows;
+	}
+
+	/**
+	 * Resolve the attributes of an exampleset by their names.
+	 *
+	 * @param exampleSet the exampleset containing the attributes
+	 * @param names the names of the attributes to resolve
+	 * @return the attributes in the same order as the names
+	 * @throws OperatorException if one of the attributes is missing in the exampleset
+	 */
+	public static Attribute[] resolveAttributes(ExampleSet exampleSet, List<String> names) throws OperatorException{
+
+		Attributes attributes = exampleSet.getAttributes();
+		Attribute[] result = new Attribute[names.size()];
+
+		for (int i=0; i<result.length; i++){
+			result[i] = attributes.get(names.get(i));
+			if (result[i] == null){
+				throw new OperatorException("The attribute " + names.get(i)
+						+ " used in training is missing in the input exampleset.");
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Convert the features of an exampleset into a 2d-array with one row per example.
+	 *
+	 * @param exampleSet the exampleset to convert
+	 * @return the 2d-array of features
+	 */
+	public INDArray convertFeatures(ExampleSet exampleSet){
+		return convertFeatures(exampleSet, null);
+	}
+
+	/**
+	 * Convert the features of an exampleset into a 2d-array with one row per example,
+	 * and update the statistics of the features with each example on the way.
+	 *
+	 * @param exampleSet the exampleset to convert
+	 * @param statistics the statistics to update, null if no statistics are needed
+	 * @return the 2d-array of features
+	 */
+	public INDArray convertFeatures(ExampleSet exampleSet, RunningStatistics statistics){
+		return convertFeatures(resolveRows(exampleSet), statistics);
+	}
+
+	/**
+	 * Convert the features of data rows into a 2d-array with one row per data row,
+	 * and update the statistics of the features with each row on the way.
+	 */
+	private INDArray convertFeatures(DataRow[] rows, RunningStatistics statistics){
+
+		if (statistics == null){
+			return convertFeatures(rows, null, 0, rows.length);
+		}
+
+		INDArray result = Nd4j.create(new int[]{rows.length, features.length}, 'c');
+		DataBuffer buffer = result.data();
+		int index = result.offset();
+
+		double[] values = new double[features.length];
+		for (DataRow row : rows){
+			readFeatures(row, values);
+			for (int i=0; i<values.length; i++){
+				buffer.put(index++, values[i]);
+			}
+			statistics.add(values);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Update the statistics of the features with all data rows, without converting them into ND4J arrays.
+	 *
+	 * @param rows the data rows to read, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @param statistics the statistics to update
+	 */
+	public void accumulateStatistics(DataRow[] rows, RunningStatistics statistics){
+		double[] values = new double[features.length];
+		for (DataRow row : rows){
+			readFeatures(row, values);
+			statistics.add(values);
+		}
+	}
+
+	/**
+	 * Update the statistics of the features with all rows of a 2d-array of converted features.
+	 */
+	private static void accumulateStatistics(INDArray features, RunningStatistics statistics){
+		DataBuffer buffer = features.data();
+		int index = features.offset();
+		double[] row = new double[features.columns()];
+		for (int r=0; r<features.rows(); r++){
+			for (int i=0; i<row.length; i++){
+				row[i] = buffer.getDouble(index++);
+			}
+			statistics.add(row);
+		}
+	}
+
+	/**
+	 * Normalize a 2d-array of features in place, in a single pass over its values.
+	 *
+	 * @param features the 2d-array of features, one row per example
+	 * @param means the means of the features
+	 * @param stds the standard deviations of the features
+	 */
+	public static void normalize(INDArray features, INDArray means, INDArray stds){
+
+		int columns = features.columns();
+		double[] shifts = new double[columns];
+		double[] scales = new double[columns];
+		for (int i=0; i<columns; i++){
+			shifts[i] = means.getDouble(i);
+			scales[i] = stds.getDouble(i);
+		}
+
+		DataBuffer buffer = features.data();
+		int offset = features.offset();
+		int rowStride = features.stride(0);
+		int columnStride = features.stride(1);
+
+		for (int r=0; r<features.rows(); r++){
+			int index = offset + r * rowStride;
+			for (int i=0; i<columns; i++){
+				buffer.put(index, (buffer.getDouble(index) - shifts[i]) / scales[i]);
+				index += columnStride;
+			}
+		}
+	}
+
+	/**
+	 * Convert the labels of an exampleset into a 2d-array with one row per example,
+	 * each row contains a 1 on the index of the label value and 0 elsewhere.
+	 * A numerical label is converted into a single column of its values.
+	 *
+	 * @param exampleSet the exampleset to convert
+	 * @return the 2d-array of labels, an empty 2d-array if the labels are not converted
+	 */
+	public INDArray convertLabels(ExampleSet exampleSet){
+		return convertLabels(resolveRows(exampleSet));
+	}
+
+	/**
+	 * Convert the features of data rows into a 2d-array with one row per data row.
+	 *
+	 * @param rows the data rows to convert, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @return the 2d-array of features
+	 */
+	public INDArray convertFeatures(DataRow[] rows){
+		return convertFeatures(rows, null, 0, rows.length);
+	}
+
+	/**
+	 * Convert the features of a range of positions in a permutation of data rows
+	 * into a 2d-array with one row per data row.
+	 *
+	 * @param rows the data rows, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @param order the indices of the rows in the order to convert them, null for the order of the rows
+	 * @param from the first position to convert
+	 * @param to the position after the last one to convert
+	 * @return the 2d-array of features
+	 */
+	public INDArray convertFeatures(DataRow[] rows, int[] order, int from, int to){
+
+		INDArray result = Nd4j.create(new int[]{to - from, features.length}, 'c');
+		DataBuffer buffer = result.data();
+		int index = result.offset();
+
+		for (int i=from; i<to; i++){
+			index = writeFeatures(rows[order == null ? i : order[i]], buffer, index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Convert the labels of data rows into a 2d-array with one row per data row.
+	 *
+	 * @param rows the data rows to convert, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @return the 2d-array of labels, an empty 2d-array if the labels are not converted
+	 */
+	public INDArray convertLabels(DataRow[] rows){
+		return convertLabels(rows, null, 0, rows.length);
+	}
+
+	/**
+	 * Convert the labels of a range of positions in a permutation of data rows
+	 * into a 2d-array with one row per data row.
+	 *
+	 * @param rows the data rows, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @param order the indices of the rows in the order to convert them, null for the order of the rows
+	 * @param from the first position to convert
+	 * @param to the position after the last one to convert
+	 * @return the 2d-array of labels, an empty 2d-array if the labels are not converted
+	 */
+	public INDArray convertLabels(DataRow[] rows, int[] order, int from, int to){
+
+		INDArray result = Nd4j.create(new int[]{to - from, numLabels}, 'c');
+		if (label == null){
+			return result;
+		}
+
+		DataBuffer buffer = result.data();
+		int index = result.offset();
+
+		for (int i=from; i<to; i++){
+			index = writeLabel(rows[order == null ? i : order[i]], buffer, index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Retrieve what identifies the converted columns of an example table,
+	 * i.e. the columns of the attributes in the table and the columns of the label values.
+	 *
+	 * @return the identity of the columns, null if the values of an attribute are transformed
+	 *         and thus not only given by the table
+	 */
+	List<Object> getCacheColumns(){
+
+		List<Object> columns = new ArrayList<Object>();
+		for (Attribute attribute : features){
+			if (attribute.getLastTransformation() != null){
+				return null;
+			}
+			columns.add(attribute.getTableIndex());
+		}
+
+		if (label != null){
+			if (label.getLastTransformation() != null){
+				return null;
+			}
+			columns.add(label.getTableIndex());
+			columns.add(numericalLabel ? null : label.getMapping().getValues());
+			columns.add(labelColumns == null ? null : Arrays.toString(labelColumns));
+		}
+
+		return columns;
+	}
+
+	/**
+	 * Read the features of one data row into an array.
+	 */
+	private void readFeatures(DataRow row, double[] values){
+		for (int i=0; i<features.length; i++){
+			values[i] = features[i].getValue(row);
+		}
+	}
+
+	/**
+	 * Read the features of one data row into a float array, e.g. to score it without ND4J.
+	 *
+	 * @param row the data row of the example
+	 * @param values the array the features are written to, at least one value per feature
+	 */
+	public void readFeatures(DataRow row, float[] values){
+		for (int i=0; i<features.length; i++){
+			values[i] = (float) features[i].getValue(row);
+		}
+	}
+
+	/**
+	 * Write the features of one data row into a buffer.
+	 * @return the index in the buffer after the written row
+	 */
+	private int writeFeatures(DataRow row, DataBuffer buffer, int index){
+		for (Attribute attribute : features){
+			buffer.put(index++, attribute.getValue(row));
+		}
+		return index;
+	}
+
+	/**
+	 * Write the label of one data row into a buffer as a row of 0 and 1,
+	 * or as its value if the label is numerical.
+	 * @return the index in the buffer after the written row
+	 */
+	private int writeLabel(DataRow row, DataBuffer buffer, int index){
+		return writeLabel(label.getValue(row), buffer, index);
+	}
+
+	/**
+	 * Write a value of the label into a buffer.
+	 * @return the index in the buffer after the written row
+	 */
+	private int writeLabel(double value, DataBuffer buffer, int index){
+		if (numericalLabel){
+			buffer.put(index, value);
+		} else if (labelColumns == null){
+			buffer.put(index + (int) value, 1);
+		} else {
+			buffer.put(index + labelColumns[(int) value], 1);
+		}
+		return index + numLabels;
+	}
+
+	/**
+	 * Convert an exampleset into a dataset with the names of the features and labels.
+	 *
+	 * @param exampleSet the exampleset to convert
+	 * @return the generated dataset
+	 */
+	public DataSet convert(ExampleSet exampleSet){
+		return convert(exampleSet, null);
+	}
+
+	/**
+	 * Convert an exampleset into a dataset with the names of the features and labels,
+	 * and update the statistics of the features on the way.
+	 * 
+	 * If the underlying example table has been converted before, e.g. for another fold of a validation,
+	 * the rows of the examples are copied from the {@link ConversionCache}.
+	 *
+	 * @param exampleSet the exampleset to convert
+	 * @param statistics the statistics to update, null if no statistics are needed
+	 * @return the generated dataset
+	 */
+	public DataSet convert(ExampleSet exampleSet, RunningStatistics statistics){
+		DataRow[] rows = resolveRows(exampleSet);
+		DataSet dataSet = ConversionCache.convert(this, exampleSet.getExampleTable(), rows);
+		if (dataSet == null){
+			dataSet = new DataSet(convertFeatures(rows, statistics), convertLabels(rows));
+		} else if (statistics != null){
+			accumulateStatistics(dataSet.getFeatures(), statistics);
+		}
+		dataSet.setColumnNames(getFeatureNames());
+		dataSet.setLabelNames(getLabelNames());
+		return dataSet;
+	}
+
+	/**
+	 * Convert a range of positions in a permutation of data rows into a dataset.
+	 *
+	 * @param rows the data rows, e.g. resolved by {@link #resolveRows(ExampleSet)}
+	 * @param order the indices of the rows in the order to convert them, null for the order of the rows
+	 * @param from the first position to convert
+	 * @param to the position after the last one to convert
+	 * @return the generated dataset
+	 */
+	public DataSet convert(DataRow[] rows, int[] order, int from, int to){
+		return new DataSet(convertFeatures(rows, order, from, to), convertLabels(rows, order, from, to));
+	}
+
+	/**
+	 * Retrieve the names of the converted features.
+	 * @return a list of the feature names
+	 */
+	public List<String> getFeatureNames(){
+		List<String> names = new ArrayList<String>(features.length);
+		for (Attribute attribute : features){
+			names.add(attribute.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Retrieve the names of the converted labels, i.e. the possible values of the label attribute,
+	 * or the name of the label attribute if it is numerical.
+	 * @return a list of the label names, an empty list if the labels are not converted
+	 */
+	public List<String> getLabelNames(){
+		if (label == null){
+			return new ArrayList<String>();
+		}
+		if (numericalLabel){
+			List<String> names = new ArrayList<String>(1);
+			names.add(label.getName());
+			return names;
+		}
+		return label.getMapping().getValues();
+	}
+
+	/**
+	 * Retrieve the number of columns of the converted features.
+	 * @return the number of features
+	 */
+	public int getNumFeatures(){
+		return features.length;
+	}
+
+	/**
+	 * Retrieve the number of columns of the converted labels.
+	 * @return the number of labels
+	 */
+	public int getNumLabels(){
+		return numLabels;
+	}
+}
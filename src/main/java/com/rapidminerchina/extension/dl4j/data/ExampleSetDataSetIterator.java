@@ -0,0 +1,249 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.util.List;
+import java.util.Random;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.table.DataRow;
+
+/**
+ * A dataset iterator backed directly by an exampleset.
+ *
+ * The examples are converted into mini-batches of a fixed size on demand,
+ * so only the current mini-batch is held as ND4J arrays,
+ * and the memory used during training depends on the batch size rather than the number of examples.
+ *
+ * If shuffling is enabled, the examples are visited in a new random order after every reset, i.e. in every epoch.
+ * Only a permutation of the example indices is shuffled, neither the exampleset nor its table is reordered or copied.
+ * The data rows of the examples are resolved once, so a view on a table is not walked through again for every mini-batch.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@SuppressWarnings("serial")
+public class ExampleSetDataSetIterator implements DataSetIterator {
+
+	/**
+	 * The exampleset to iterate over.
+	 */
+	private final ExampleSet exampleSet;
+
+	/**
+	 * The converter that writes the examples into ND4J arrays.
+	 */
+	private final transient ExampleSetConverter converter;
+
+	/**
+	 * The data rows of the examples, in the order of the exampleset.
+	 */
+	private final transient DataRow[] rows;
+
+	/**
+	 * The number of examples in each mini-batch.
+	 */
+	private final int batchSize;
+
+	/**
+	 * The index of the next example to convert.
+	 */
+	private int cursor = 0;
+
+	/**
+	 * The pre-processor applied to each mini-batch, may be null.
+	 */
+	private DataSetPreProcessor preProcessor = null;
+
+	/**
+	 * The random generator used to shuffle the examples, null if the examples are not shuffled.
+	 */
+	private Random random = null;
+
+	/**
+	 * The indices of the examples in the order of the current epoch, null for the order of the exampleset.
+	 * A new array is assigned on every shuffle, so workers still converting a batch of the last epoch are not affected.
+	 */
+	private volatile int[] order = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param exampleSet the exampleset to iterate over
+	 * @param converter the converter that writes the examples into ND4J arrays
+	 * @param batchSize the number of examples in each mini-batch
+	 */
+	public ExampleSetDataSetIterator(ExampleSet exampleSet, ExampleSetConverter converter, int batchSize){
+		this(exampleSet, ExampleSetConverter.resolveRows(exampleSet), converter, batchSize);
+	}
+
+	/**
+	 * Constructor for an exampleset whose data rows have been resolved already.
+	 *
+	 * @param exampleSet the exampleset to iterate over
+	 * @param rows the data rows of the examples, as resolved by {@link ExampleSetConverter#resolveRows(ExampleSet)}
+	 * @param converter the converter that writes the examples into ND4J arrays
+	 * @param batchSize the number of examples in each mini-batch
+	 */
+	public ExampleSetDataSetIterator(ExampleSet exampleSet, DataRow[] rows, ExampleSetConverter converter, int batchSize){
+		this.exampleSet = exampleSet;
+		this.converter = converter;
+		this.batchSize = batchSize;
+		this.rows = rows;
+	}
+
+	/**
+	 * Constructor that converts all regular attributes and the label of the exampleset.
+	 *
+	 * @param exampleSet the exampleset to iterate over
+	 * @param batchSize the number of examples in each mini-batch
+	 */
+	public ExampleSetDataSetIterator(ExampleSet exampleSet, int batchSize){
+		this(exampleSet, new ExampleSetConverter(exampleSet, true), batchSize);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return cursor < exampleSet.size();
+	}
+
+	@Override
+	public DataSet next() {
+		return next(batchSize);
+	}
+
+	@Override
+	public DataSet next(int num) {
+
+		int from = cursor;
+		int to = Math.min(cursor + num, exampleSet.size());
+		cursor = to;
+
+		return convert(from, to);
+	}
+
+	/**
+	 * Convert the mini-batch of the given index, regardless of the cursor.
+	 * This method does not change the state of the iterator, thus can be called from several threads at once.
+	 *
+	 * @param index the index of the mini-batch
+	 * @return the converted and pre-processed mini-batch
+	 */
+	public DataSet getBatch(int index){
+		int from = index * batchSize;
+		return convert(from, Math.min(from + batchSize, exampleSet.size()));
+	}
+
+	/**
+	 * Retrieve the number of mini-batches in one pass over the exampleset.
+	 * @return the number of mini-batches
+	 */
+	public int getNumBatches(){
+		return (exampleSet.size() + batchSize - 1) / batchSize;
+	}
+
+	/**
+	 * Visit the examples in a new random order after every reset.
+	 *
+	 * @param random the random generator used to shuffle the examples, null to visit the examples in their order
+	 */
+	public void setShuffle(Random random){
+		this.random = random;
+		shuffle();
+	}
+
+	/**
+	 * Draw a new permutation of the example indices, or go back to the order of the exampleset without a random generator.
+	 */
+	private void shuffle(){
+		order = random == null ? null : createPermutation(exampleSet.size(), random);
+	}
+
+	/**
+	 * Draw a random permutation of the indices 0 to size - 1 with the Fisher-Yates shuffle.
+	 *
+	 * @param size the number of indices
+	 * @param random the random generator
+	 * @return the permutation
+	 */
+	static int[] createPermutation(int size, Random random){
+
+		int[] permutation = new int[size];
+		for (int i=0; i<permutation.length; i++){
+			permutation[i] = i;
+		}
+		for (int i=permutation.length-1; i>0; i--){
+			int j = random.nextInt(i + 1);
+			int swap = permutation[i];
+			permutation[i] = permutation[j];
+			permutation[j] = swap;
+		}
+		return permutation;
+	}
+
+	/**
+	 * Convert a range of examples and apply the pre-processor on it.
+	 */
+	private DataSet convert(int from, int to){
+		DataSet dataSet = converter.convert(rows, order, from, to);
+		if (preProcessor != null){
+			preProcessor.preProcess(dataSet);
+		}
+		return dataSet;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Removing examples is not supported");
+	}
+
+	@Override
+	public int totalExamples() {
+		return exampleSet.size();
+	}
+
+	@Override
+	public int inputColumns() {
+		return converter.getNumFeatures();
+	}
+
+	@Override
+	public int totalOutcomes() {
+		return converter.getNumLabels();
+	}
+
+	@Override
+	public void reset() {
+		cursor = 0;
+		if (random != null){
+			shuffle();
+		}
+	}
+
+	@Override
+	public int batch() {
+		return batchSize;
+	}
+
+	@Override
+	public int cursor() {
+		return cursor;
+	}
+
+	@Override
+	public int numExamples() {
+		return exampleSet.size();
+	}
+
+	@Override
+	public void setPreProcessor(DataSetPreProcessor preProcessor) {
+		this.preProcessor = preProcessor;
+	}
+
+	@Override
+	public List<String> getLabels() {
+		return converter.getLabelNames();
+	}
+}
@@ -0,0 +1,41 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+
+/**
+ * A pre-processor that normalizes the features of each mini-batch
+ * with the means and standard deviations of the training data.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class NormalizingPreProcessor implements DataSetPreProcessor {
+
+	/**
+	 * The means of the features.
+	 */
+	private final INDArray columnMeans;
+
+	/**
+	 * The standard deviations of the features.
+	 */
+	private final INDArray columnStds;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param columnMeans the means of the features
+	 * @param columnStds the standard deviations of the features
+	 */
+	public NormalizingPreProcessor(INDArray columnMeans, INDArray columnStds){
+		this.columnMeans = columnMeans;
+		this.columnStds = columnStds;
+	}
+
+	@Override
+	public void preProcess(DataSet dataSet) {
+		ExampleSetConverter.normalize(dataSet.getFeatures(), columnMeans, columnStds);
+	}
+}
@@ -0,0 +1,253 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.operator.Operator;
+import com.rapidminer.operator.ProcessStoppedException;
+import com.rapidminer.tools.ParameterService;
+
+/**
+ * The floating point precision of the ND4J arrays used to convert, train and score.
+ *
+ * The data type of new arrays is a global setting of ND4J, thus a network and all arrays it works with
+ * have to be created while the global data type is its precision. The conversion, training and scoring
+ * of a network enter the precision of the network and leave it afterwards.
+ * Operations in the same precision may run at the same time, while an operation in another precision
+ * waits until all of them have left, so the global data type never changes below a running operation.
+ * A thread may enter its precision again, but it cannot enter another precision before it has left its own,
+ * as it would wait for itself.
+ * The wait ends with a {@link ProcessStoppedException} if the waiting thread is interrupted
+ * or the process of the waiting operator is stopped.
+ * Single precision halves the memory and memory bandwidth of the examples, weights and gradients.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class Precision {
+
+	/**
+	 * The setting for the default precision of the learners.
+	 */
+	public static final String PROPERTY_PRECISION = "rapidminer.dl4j.precision";
+
+	/**
+	 * The names of the precisions, in the order of {@link #TYPES}.
+	 */
+	public static final String[] PRECISION_NAMES = new String[]{
+			"double"
+			,"float"
+	};
+
+	/**
+	 * The data types of the precisions.
+	 */
+	private static final DataBuffer.Type[] TYPES = new DataBuffer.Type[]{
+			DataBuffer.Type.DOUBLE
+			,DataBuffer.Type.FLOAT
+	};
+
+	/**
+	 * The milliseconds between two checks whether the process of a waiting operator has been stopped.
+	 */
+	private static final long STOP_CHECK_INTERVAL = 100;
+
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The number of operations in the current precision.
+	 */
+	private static int active = 0;
+
+	/**
+	 * The global data type before the first operation entered the current precision.
+	 */
+	private static DataBuffer.Type previous = null;
+
+	/**
+	 * The number of times the current thread has entered the current precision.
+	 */
+	private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private Precision(){
+		// utility class
+	}
+
+	/**
+	 * Retrieve the data type of a precision by its name.
+	 *
+	 * @param name the name of the precision
+	 * @return the data type, double precision for an unknown name
+	 */
+	public static DataBuffer.Type getType(String name){
+		for (int i=0; i<PRECISION_NAMES.length; i++){
+			if (PRECISION_NAMES[i].equals(name)){
+				return TYPES[i];
+			}
+		}
+		return DataBuffer.Type.DOUBLE;
+	}
+
+	/**
+	 * Retrieve the default precision given by the setting {@link #PROPERTY_PRECISION}.
+	 * @return the default data type
+	 */
+	public static DataBuffer.Type getDefault(){
+		return getType(ParameterService.getParameterValue(PROPERTY_PRECISION));
+	}
+
+	/**
+	 * Retrieve whether the current thread can enter a precision, i.e. it is not in another precision.
+	 *
+	 * @param type the data type, null for double precision
+	 * @return false if the current thread has entered another precision and not left it yet
+	 */
+	public static boolean canEnter(DataBuffer.Type type){
+		if (type == null){
+			type = DataBuffer.Type.DOUBLE;
+		}
+		synchronized (LOCK) {
+			return DEPTH.get()[0] == 0 || Nd4j.dataType() == type;
+		}
+	}
+
+	/**
+	 * Enter a precision, waiting until the operations in another precision have left.
+	 * Each call must be followed by a call of {@link #leave()}, usually in a finally block.
+	 *
+	 * @param type the data type, null for double precision
+	 * @throws ProcessStoppedException if the current thread is interrupted while waiting
+	 * @throws IllegalStateException if the current thread is in another precision, see {@link #canEnter(DataBuffer.Type)}
+	 */
+	public static void enter(DataBuffer.Type type) throws ProcessStoppedException{
+		enter(type, null);
+	}
+
+	/**
+	 * Enter a precision for an operator, waiting until the operations in another precision have left,
+	 * while checking regularly whether the process of the operator has been stopped.
+	 * Each call must be followed by a call of {@link #leave()}, usually in a finally block.
+	 *
+	 * @param type the data type, null for double precision
+	 * @param operator the operator waiting, null to wait until the current thread is interrupted
+	 * @throws ProcessStoppedException if the process of the operator is stopped or the current thread is interrupted while waiting
+	 * @throws IllegalStateException if the current thread is in another precision, see {@link #canEnter(DataBuffer.Type)}
+	 */
+	public static void enter(DataBuffer.Type type, Operator operator) throws ProcessStoppedException{
+
+		if (type == null){
+			type = DataBuffer.Type.DOUBLE;
+		}
+
+		int[] depth = DEPTH.get();
+		while (true){
+			synchronized (LOCK) {
+				if (tryEnter(type, depth)){
+					return;
+				}
+				try {
+					LOCK.wait(operator == null ? 0 : STOP_CHECK_INTERVAL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw operator == null ? new ProcessStoppedException() : new ProcessStoppedException(operator);
+				}
+			}
+			if (operator != null){
+				operator.checkForStop();
+			}
+		}
+	}
+
+	/**
+	 * Enter a precision where the operation cannot be stopped, e.g. to build or copy a network on demand,
+	 * waiting until the operations in another precision have left even if the current thread is interrupted.
+	 * The interrupt is kept for the caller.
+	 * Each call must be followed by a call of {@link #leave()}, usually in a finally block.
+	 *
+	 * @param type the data type, null for double precision
+	 * @throws IllegalStateException if the current thread is in another precision, see {@link #canEnter(DataBuffer.Type)}
+	 */
+	public static void enterUninterruptibly(DataBuffer.Type type){
+
+		if (type == null){
+			type = DataBuffer.Type.DOUBLE;
+		}
+
+		int[] depth = DEPTH.get();
+		boolean interrupted = false;
+		synchronized (LOCK) {
+			while (!tryEnter(type, depth)){
+				try {
+					LOCK.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Enter a precision if no operation is in another precision. Must be called while holding the lock.
+	 *
+	 * @return true if the precision has been entered
+	 */
+	private static boolean tryEnter(DataBuffer.Type type, int[] depth){
+		if (depth[0] > 0 && Nd4j.dataType() != type){
+			throw new IllegalStateException("Cannot enter " + type + " precision while in " + Nd4j.dataType() + " precision.");
+		}
+		if (active > 0 && Nd4j.dataType() != type){
+			return false;
+		}
+		if (active == 0){
+			previous = Nd4j.dataType();
+			setGlobalType(type);
+		}
+		active++;
+		depth[0]++;
+		return true;
+	}
+
+	/**
+	 * Leave the precision entered last, restoring the former global data type after the last operation.
+	 */
+	public static void leave(){
+		synchronized (LOCK) {
+			DEPTH.get()[0]--;
+			active--;
+			if (active == 0){
+				setGlobalType(previous);
+				LOCK.notifyAll();
+			}
+		}
+	}
+
+	private static void setGlobalType(DataBuffer.Type type){
+		Nd4j.dtype = type;
+		Nd4j.factory().setDType(type);
+	}
+
+	/**
+	 * Copy an array into the current precision.
+	 *
+	 * @param array the array to copy, e.g. created in another precision
+	 * @return the copy with the current global data type
+	 */
+	public static INDArray copy(INDArray array){
+		INDArray copy = array.dup();
+		if (copy.data().dataType() == Nd4j.dataType()){
+			return copy;
+		}
+		return Nd4j.create(copy.data().asDouble(), copy.shape());
+	}
+}
@@ -0,0 +1,214 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * A dataset iterator that converts and pre-processes the next mini-batches on worker threads
+ * while the current mini-batch is being trained.
+ *
+ * At most a fixed number of mini-batches are converted ahead of the training,
+ * so the memory used is bounded by the number of prefetched mini-batches.
+ * The mini-batches are always returned in the same order as the underlying iterator produces them.
+ *
+ * The worker threads are kept until {@link #shutdown()} is called.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@SuppressWarnings("serial")
+public class PrefetchDataSetIterator implements DataSetIterator {
+
+	/**
+	 * The iterator that converts the mini-batches.
+	 */
+	private final ExampleSetDataSetIterator source;
+
+	/**
+	 * The number of mini-batches to convert ahead of the training.
+	 */
+	private final int prefetch;
+
+	/**
+	 * The worker threads.
+	 */
+	private final transient ExecutorService executor;
+
+	/**
+	 * The mini-batches being converted, in the order they are to be returned.
+	 */
+	private final transient LinkedList<Future<DataSet>> queue = new LinkedList<Future<DataSet>>();
+
+	/**
+	 * The index of the next mini-batch to hand over to the workers.
+	 */
+	private int submitted = 0;
+
+	/**
+	 * The index of the next mini-batch to return.
+	 */
+	private int returned = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source the iterator that converts the mini-batches
+	 * @param prefetch the number of mini-batches to convert ahead of the training
+	 * @param numThreads the number of worker threads
+	 */
+	public PrefetchDataSetIterator(ExampleSetDataSetIterator source, int prefetch, int numThreads){
+		this.source = source;
+		this.prefetch = prefetch;
+		this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DL4J mini-batch prefetch");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Constructor with one worker thread per prefetched mini-batch, but not more than the available processors.
+	 *
+	 * @param source the iterator that converts the mini-batches
+	 * @param prefetch the number of mini-batches to convert ahead of the training
+	 */
+	public PrefetchDataSetIterator(ExampleSetDataSetIterator source, int prefetch){
+		this(source, prefetch, Math.max(1, Math.min(prefetch, Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Hand over mini-batches to the workers until the queue is full.
+	 */
+	private void fill(){
+		while (queue.size() < prefetch && submitted < source.getNumBatches()){
+			final int index = submitted++;
+			queue.add(executor.submit(new Callable<DataSet>() {
+
+				@Override
+				public DataSet call() throws Exception {
+					return source.getBatch(index);
+				}
+			}));
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return returned < source.getNumBatches();
+	}
+
+	@Override
+	public DataSet next() {
+
+		fill();
+		Future<DataSet> future = queue.poll();
+		returned++;
+
+		// keep the workers busy while the current mini-batch is trained
+		fill();
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the next mini-batch", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to convert the mini-batch " + (returned - 1), e.getCause());
+		}
+	}
+
+	@Override
+	public DataSet next(int num) {
+		if (num != source.batch()){
+			throw new UnsupportedOperationException("Only mini-batches of size " + source.batch() + " can be prefetched");
+		}
+		return next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Removing examples is not supported");
+	}
+
+	@Override
+	public int totalExamples() {
+		return source.totalExamples();
+	}
+
+	@Override
+	public int inputColumns() {
+		return source.inputColumns();
+	}
+
+	@Override
+	public int totalOutcomes() {
+		return source.totalOutcomes();
+	}
+
+	@Override
+	public void reset() {
+		for (Future<DataSet> future : queue){
+			future.cancel(false);
+		}
+		queue.clear();
+		submitted = 0;
+		returned = 0;
+		source.reset();
+	}
+
+	@Override
+	public int batch() {
+		return source.batch();
+	}
+
+	@Override
+	public int cursor() {
+		return Math.min(returned * source.batch(), source.numExamples());
+	}
+
+	@Override
+	public int numExamples() {
+		return source.numExamples();
+	}
+
+	/**
+	 * Set the pre-processor of the underlying iterator,
+	 * the pre-processing then also takes place on the worker threads.
+	 * Mini-batches already prefetched are discarded.
+	 */
+	@Override
+	public void setPreProcessor(DataSetPreProcessor preProcessor) {
+		reset();
+		source.setPreProcessor(preProcessor);
+	}
+
+	@Override
+	public List<String> getLabels() {
+		return source.getLabels();
+	}
+
+	/**
+	 * Stop the worker threads, the iterator can not be used afterwards.
+	 */
+	public void shutdown(){
+		for (Future<DataSet> future : queue){
+			future.cancel(false);
+		}
+		queue.clear();
+		executor.shutdownNow();
+	}
+}
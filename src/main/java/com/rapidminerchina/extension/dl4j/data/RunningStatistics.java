@@ -0,0 +1,129 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.io.Serializable;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * The means and variances of a number of columns, updated row by row.
+ *
+ * The statistics are accumulated with Welford's method, so the rows need to be seen only once,
+ * e.g. while they are converted, and the variances stay accurate even if the means are large
+ * compared to the standard deviations.
+ * As the statistics can be updated at any time, they are kept with a model to be refined with new examples.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@SuppressWarnings("serial")
+public class RunningStatistics implements Serializable {
+
+	/**
+	 * The means of the columns of the rows seen so far.
+	 */
+	private final double[] means;
+
+	/**
+	 * The sums of the squared differences from the current means.
+	 */
+	private final double[] squaredDifferences;
+
+	/**
+	 * The number of rows seen so far.
+	 */
+	private long count = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numColumns the number of columns
+	 */
+	public RunningStatistics(int numColumns){
+		this.means = new double[numColumns];
+		this.squaredDifferences = new double[numColumns];
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param other the statistics to copy
+	 */
+	public RunningStatistics(RunningStatistics other){
+		this.means = other.means.clone();
+		this.squaredDifferences = other.squaredDifferences.clone();
+		this.count = other.count;
+	}
+
+	/**
+	 * Update the statistics with one row.
+	 *
+	 * @param row the values of the row, one per column
+	 */
+	public void add(double[] row){
+		count++;
+		for (int i=0; i<means.length; i++){
+			double delta = row[i] - means[i];
+			means[i] += delta / count;
+			squaredDifferences[i] += delta * (row[i] - means[i]);
+		}
+	}
+
+	/**
+	 * Update the statistics with all rows seen by other statistics of the same columns,
+	 * e.g. accumulated over another part of the examples, as if the rows had been added one by one.
+	 *
+	 * @param other the statistics to merge into these statistics
+	 */
+	public void merge(RunningStatistics other){
+		if (other.count == 0){
+			return;
+		}
+		long total = count + other.count;
+		for (int i=0; i<means.length; i++){
+			double delta = other.means[i] - means[i];
+			means[i] += delta * other.count / total;
+			squaredDifferences[i] += other.squaredDifferences[i] + delta * delta * count * other.count / total;
+		}
+		count = total;
+	}
+
+	/**
+	 * Retrieve the number of rows seen so far.
+	 * @return the number of rows
+	 */
+	public long getCount(){
+		return count;
+	}
+
+	/**
+	 * Retrieve the number of columns.
+	 * @return the number of columns
+	 */
+	public int getNumColumns(){
+		return means.length;
+	}
+
+	/**
+	 * Retrieve the means of the columns as a row vector.
+	 * @return the means
+	 */
+	public INDArray getMeans(){
+		return Nd4j.create(means.clone());
+	}
+
+	/**
+	 * Retrieve the (sample) standard deviations of the columns as a row vector.
+	 *
+	 * @param epsilon the value added to each standard deviation, so it can be safely divided by
+	 * @return the standard deviations
+	 */
+	public INDArray getStandardDeviations(double epsilon){
+		double[] stds = new double[means.length];
+		long degrees = Math.max(count - 1, 1);
+		for (int i=0; i<stds.length; i++){
+			stds[i] = Math.sqrt(squaredDifferences[i] / degrees) + epsilon;
+		}
+		return Nd4j.create(stds);
+	}
+}
@@ -198,6 +198,17 @@ public class DenseLayer extends AbstractLayer{
 		org.deeplearning4j.nn.conf.layers.DenseLayer.Builder builder = generateBuilder().nIn(i);
 		return builder.build();
 	}
+	
+	/**
+	 * Report the configuration of this layer with another number of nodes, e.g. when searching for the size of the layer.
+	 */
+	public Layer getLayer(int in, int out) throws UndefinedParameterError {
+		org.deeplearning4j.nn.conf.layers.DenseLayer.Builder builder = 
+				generateBuilder()
+				.nIn(in)
+				.nOut(out);
+		return builder.build();
+	}
 
 	@Override
 	public int getNumNodes() throws UndefinedParameterError {
@@ -288,6 +288,17 @@ public class RBMLayer extends AbstractLayer{
 		RBM.Builder builder = generateBuilder().nIn(i);
 		return builder.build();
 	}
+	
+	/**
+	 * Report the configuration of this layer with another number of nodes, e.g. when searching for the size of the layer.
+	 */
+	public Layer getLayer(int in, int out) throws UndefinedParameterError {
+		RBM.Builder builder = 
+				generateBuilder()
+				.nIn(in)
+				.nOut(out);
+		return builder.build();
+	}
 
 	@Override
 	public int getNumNodes() throws UndefinedParameterError {
@@ -1,12 +1,15 @@
 package com.rapidminerchina.extension.dl4j.learners;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 
+import com.rapidminer.example.Attribute;
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.operator.Model;
 import com.rapidminer.operator.Operator;
@@ -25,18 +28,22 @@ import com.rapidminer.operator.ports.metadata.SubprocessTransformRule;
 import com.rapidminer.parameter.ParameterType;
 import com.rapidminer.parameter.ParameterTypeBoolean;
 import com.rapidminer.parameter.ParameterTypeCategory;
+import com.rapidminer.parameter.ParameterTypeDirectory;
 import com.rapidminer.parameter.ParameterTypeDouble;
 import com.rapidminer.parameter.ParameterTypeInt;
 import com.rapidminer.parameter.conditions.BooleanParameterCondition;
 import com.rapidminer.tools.LogService;
 import com.rapidminer.tools.ParameterService;
+import com.rapidminerchina.extension.dl4j.data.Precision;
 import com.rapidminerchina.extension.dl4j.io.LayerSemaphore;
 import com.rapidminerchina.extension.dl4j.layers.AbstractLayer;
 import com.rapidminerchina.extension.dl4j.layers.OutputLayer;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
 
 public abstract class AbstractDLModelLearner extends OperatorChain implements CapabilityProvider{
 	
 	protected InputPort trainPort = getInputPorts().createPort("training examples", ExampleSet.class);
+	protected InputPort initialModelPort = getInputPorts().createPort("initial model");
 	protected OutputPort modelPort = getOutputPorts().createPort("model");
 	protected OutputPort examplePort = getOutputPorts().createPort("examples");
 
@@ -51,6 +58,46 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 	 */
 	public static final String PARAMETER_ITERATION = "iteration";
 	
+	/**
+	 * The parameter name for &quot;The number of passes over the training examples.&quot;
+	 */
+	public static final String PARAMETER_EPOCHS = "epochs";
+	
+	/**
+	 * Indicates if to stop the training once the score on held-out validation examples stops improving.
+	 */
+	public static final String PARAMETER_EARLY_STOPPING = "early_stopping";
+	
+	/**
+	 * The parameter name for &quot;The fraction of the training examples held out for validation.&quot;
+	 */
+	public static final String PARAMETER_VALIDATION_FRACTION = "validation_fraction";
+	
+	/**
+	 * The parameter name for &quot;The number of epochs between two evaluations on the validation examples.&quot;
+	 */
+	public static final String PARAMETER_EVALUATION_FREQUENCY = "evaluation_frequency";
+	
+	/**
+	 * The parameter name for &quot;The number of evaluations without improvement after which the training stops.&quot;
+	 */
+	public static final String PARAMETER_PATIENCE = "patience";
+	
+	/**
+	 * The parameter name for &quot;The directory where checkpoints are written during training.&quot;
+	 */
+	public static final String PARAMETER_CHECKPOINT_DIRECTORY = "checkpoint_directory";
+	
+	/**
+	 * The parameter name for &quot;The number of epochs between two checkpoints.&quot;
+	 */
+	public static final String PARAMETER_CHECKPOINT_FREQUENCY = "checkpoint_frequency";
+	
+	/**
+	 * Indicates if to continue the training from the latest checkpoint in the checkpoint directory.
+	 */
+	public static final String PARAMETER_RESUME_FROM_CHECKPOINT = "resume_from_checkpoint";
+	
 	/**
 	 * The parameter name for &quot;The learning rate determines by how much we change the weights
 	 * at each step.&quot;
@@ -94,6 +141,11 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 	 */
 	public static final String PARAMETER_NORMALIZE = "normalize";
 	
+	/**
+	 * Indicates if the normalization should be folded into the weights and bias of the first layer after learning.
+	 */
+	public static final String PARAMETER_FOLD_NORMALIZATION = "fold_normalization";
+	
 	/**
 	 * Indicate if to use regularization
 	 */
@@ -114,6 +166,68 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 	 */
 	public static final String PARAMETER_MINIBATCH = "mini_batch";
 	
+	/**
+	 * The parameter name for &quot;The number of examples in each mini batch, 0 for the whole example set.&quot;
+	 */
+	public static final String PARAMETER_BATCH_SIZE = "batch_size";
+	
+	/**
+	 * The parameter name for &quot;The number of mini batches converted ahead of the training.&quot;
+	 */
+	public static final String PARAMETER_PREFETCH_BATCHES = "prefetch_batches";
+	
+	/**
+	 * The parameter name for &quot;The number of network replicas trained concurrently.&quot;
+	 */
+	public static final String PARAMETER_TRAINING_WORKERS = "training_workers";
+	
+	/**
+	 * The parameter name for &quot;The number of mini batches each replica trains before the parameters are averaged.&quot;
+	 */
+	public static final String PARAMETER_AVERAGING_FREQUENCY = "averaging_frequency";
+	
+	/**
+	 * The parameter name for &quot;The number of examples scored at once when the model is applied.&quot;
+	 */
+	public static final String PARAMETER_SCORING_BATCH_SIZE = "scoring_batch_size";
+	
+	/**
+	 * The parameter name for &quot;The number of threads scoring the examples when the model is applied.&quot;
+	 */
+	public static final String PARAMETER_SCORING_THREADS = "scoring_threads";
+	
+	/**
+	 * The parameter name for &quot;The number of the highest confidences written for each example.&quot;
+	 */
+	public static final String PARAMETER_TOP_CONFIDENCES = "top_k_confidences";
+	
+	/**
+	 * The parameter name for &quot;The engine scoring the examples when the model is applied.&quot;
+	 */
+	public static final String PARAMETER_SCORING_ENGINE = "scoring_engine";
+	
+	/**
+	 * The category &quot;scoring engine&quot;, java scores networks of dense layers in plain Java.
+	 */
+	public static final String[] SCORING_ENGINE_NAMES = new String[]{
+			"nd4j"
+			,"java"
+	};
+	
+	/**
+	 * The parameter name for &quot;The floating point precision of the training and scoring.&quot;
+	 */
+	public static final String PARAMETER_PRECISION = "precision";
+	
+	/**
+	 * The category &quot;precision&quot;, the default precision is given by the settings.
+	 */
+	public static final String[] PRECISION_NAMES = new String[]{
+			"default"
+			,"double"
+			,"float"
+	};
+	
 	/**
 	 * Indicates if to minimize the loss function or maximize.
 	 */
@@ -172,6 +286,75 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 				"The number of iterations used for the neural network training.", 
 				1, Integer.MAX_VALUE, 500,
 				false));
+		
+		types.add(new ParameterTypeInt(
+				PARAMETER_EPOCHS,
+				"The number of passes over the training examples.", 
+				1, Integer.MAX_VALUE, 1,
+				false));
+		
+		types.add(new ParameterTypeBoolean(
+				PARAMETER_EARLY_STOPPING,
+				"Indicates if to hold out a part of the training examples and stop the training once the score on them stops improving. "
+				+ "The parameters with the best score are kept. Needs more than one epoch, as the score is evaluated after an epoch.",
+				false,
+				false));
+		
+		type = new ParameterTypeDouble(
+				PARAMETER_VALIDATION_FRACTION,
+				"The fraction of the training examples held out for validation.",
+				Double.MIN_VALUE, 0.9d, 0.1d);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_EARLY_STOPPING,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_EVALUATION_FREQUENCY,
+				"The number of epochs between two evaluations on the validation examples.",
+				1, Integer.MAX_VALUE, 1);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_EARLY_STOPPING,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_PATIENCE,
+				"The number of evaluations without improvement after which the training stops.",
+				1, Integer.MAX_VALUE, 5);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_EARLY_STOPPING,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeDirectory(
+				PARAMETER_CHECKPOINT_DIRECTORY,
+				"The directory where the parameters and the updater state are written during training, so the training can be resumed. "
+				+ "Leave empty to not write checkpoints.",
+				true);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_CHECKPOINT_FREQUENCY,
+				"The number of epochs between two checkpoints.",
+				1, Integer.MAX_VALUE, 1);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeBoolean(
+				PARAMETER_RESUME_FROM_CHECKPOINT,
+				"Indicates if to continue the training from the latest checkpoint in the checkpoint directory, if there is one. "
+				+ "The checkpoint is deleted when a training finishes, so only an interrupted training is continued.",
+				false);
+		type.setExpert(true);
+		types.add(type);
 
 		types.add(new ParameterTypeDouble(
 				PARAMETER_LEARNING_RATE,
@@ -201,7 +384,7 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 		// for expert features
 		type = new ParameterTypeBoolean(
 				PARAMETER_SHUFFLE,
-				"Indicates if the input data should be shuffled before learning.",
+				"Indicates if the examples should be visited in a new random order in every epoch when training in mini batches.",
 				true);
 		type.setExpert(true);
 		types.add(type);
@@ -213,6 +396,19 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 		type.setExpert(true);
 		types.add(type);
 		
+		type = new ParameterTypeBoolean(
+				PARAMETER_FOLD_NORMALIZATION,
+				"Indicates if the normalization should be folded into the weights and bias of the first layer after learning, "
+				+ "so the input data need not be normalized when the model is applied. Only dense and RBM first layers can be folded.",
+				false);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_NORMALIZE,
+						false,true));
+		types.add(type);
+		
 		type = new ParameterTypeBoolean(
 				PARAMETER_REGULARIZATION,
 				"Indicates if to use regularization. This prevent overfitting and balance weights between features",
@@ -251,6 +447,96 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 		type.setExpert(true);
 		types.add(type);
 		
+		type = new ParameterTypeInt(
+				PARAMETER_BATCH_SIZE,
+				"The number of examples in each mini batch, only one mini batch is converted and held in memory at a time. "
+				+ "0 to train the whole example set as one batch, as without mini batches.",
+				0, Integer.MAX_VALUE, 0);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_MINIBATCH,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_PREFETCH_BATCHES,
+				"The number of mini batches converted and normalized on background threads while the current mini batch is trained, 0 to convert them on demand.",
+				0, Integer.MAX_VALUE, 2);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_MINIBATCH,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_TRAINING_WORKERS,
+				"The number of network replicas trained concurrently on different mini batches, whose parameters are averaged regularly. "
+				+ "1 to train a single network.",
+				1, Integer.MAX_VALUE, 1);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_MINIBATCH,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_AVERAGING_FREQUENCY,
+				"The number of mini batches each replica trains before the parameters of the replicas are averaged.",
+				1, Integer.MAX_VALUE, 1);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_MINIBATCH,
+						false,true));
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_SCORING_BATCH_SIZE,
+				"The number of examples converted and scored at once when the model is applied, 0 to score all examples at once.",
+				0, Integer.MAX_VALUE, 10000);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_SCORING_THREADS,
+				"The number of threads scoring the examples when the model is applied, each thread scores its own range of examples.",
+				1, Integer.MAX_VALUE, 1);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeInt(
+				PARAMETER_TOP_CONFIDENCES,
+				"The number of the highest confidences written for each example when the model is applied, 0 to write the confidences of all labels. "
+				+ "The other confidences are left unset, which saves time for labels with many values.",
+				0, Integer.MAX_VALUE, 0);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeCategory(
+				PARAMETER_SCORING_ENGINE,
+				"The engine scoring the examples when the model is applied. Java scores networks of dense layers and an output layer "
+				+ "in plain Java with float weights, which is faster than ND4J for small networks; other networks are scored with ND4J.",
+				SCORING_ENGINE_NAMES,
+				0);
+		type.setExpert(true);
+		types.add(type);
+		
+		type = new ParameterTypeCategory(
+				PARAMETER_PRECISION,
+				"The floating point precision of the examples, weights and gradients during training and scoring. "
+				+ "Float halves the memory used, default takes the precision given in the settings of the extension.",
+				PRECISION_NAMES,
+				0);
+		type.setExpert(true);
+		types.add(type);
+		
 		type = new ParameterTypeBoolean(
 				PARAMETER_MINIMIZE,
 				"Indicates if to minimize or maximize the loss function.",
@@ -358,6 +644,87 @@ public abstract class AbstractDLModelLearner extends OperatorChain implements Ca
 		return result;
 	}
 	
+	/**
+	 * Retrieve the number of nodes of the output layer,
+	 * i.e. the number of label values for a nominal label and a single node for a numerical label.
+	 * Notice that a numerical label needs an output layer with a regression loss function, e.g. squared loss with identity activation.
+	 * @param exampleSet the training exampleset
+	 * @return the number of nodes of the output layer
+	 */
+	protected int getNumOutputs(ExampleSet exampleSet){
+		Attribute label = exampleSet.getAttributes().getLabel();
+		if (label.isNominal()){
+			return label.getMapping().size();
+		}
+		return 1;
+	}
+	
+	/**
+	 * Pass the parameters about how the examples are fed to the network during training and scoring to the model,
+	 * together with the model connected to the initial model port, if any, to continue the training from.
+	 * @param model the model to train
+	 */
+	protected void configureTraining(MultiLayerNetModel model) throws OperatorException{
+		
+		model.setWarmStart(initialModelPort.getDataOrNull(MultiLayerNetModel.class));
+		
+		// the whole exampleset is trained as one batch if mini batch is not used
+		if (getParameterAsBoolean(PARAMETER_MINIBATCH)){
+			model.setBatchSize(getParameterAsInt(PARAMETER_BATCH_SIZE));
+			model.setPrefetchBatches(getParameterAsInt(PARAMETER_PREFETCH_BATCHES));
+			model.setTrainingWorkers(getParameterAsInt(PARAMETER_TRAINING_WORKERS));
+			model.setAveragingFrequency(getParameterAsInt(PARAMETER_AVERAGING_FREQUENCY));
+		} else {
+			model.setBatchSize(0);
+			model.setPrefetchBatches(0);
+			model.setTrainingWorkers(1);
+		}
+		
+		model.setEpochs(getParameterAsInt(PARAMETER_EPOCHS));
+		
+		if (isParameterSet(PARAMETER_CHECKPOINT_DIRECTORY)){
+			model.setCheckpointDirectory(new File(getParameterAsString(PARAMETER_CHECKPOINT_DIRECTORY)));
+			model.setCheckpointFrequency(getParameterAsInt(PARAMETER_CHECKPOINT_FREQUENCY));
+			model.setResumeFromCheckpoint(getParameterAsBoolean(PARAMETER_RESUME_FROM_CHECKPOINT));
+		} else {
+			model.setCheckpointDirectory(null);
+		}
+		
+		if (getParameterAsBoolean(PARAMETER_EARLY_STOPPING)){
+			// with a single epoch nothing could be stopped, the validation examples would only be lost for training
+			if (getParameterAsInt(PARAMETER_EPOCHS) <= 1){
+				throw new OperatorException("Early stopping in " + getName() + " needs more than one epoch, "
+						+ "please increase the parameter " + PARAMETER_EPOCHS + " or switch off " + PARAMETER_EARLY_STOPPING + ".");
+			}
+			model.setValidationFraction(getParameterAsDouble(PARAMETER_VALIDATION_FRACTION));
+			model.setEvaluationFrequency(getParameterAsInt(PARAMETER_EVALUATION_FREQUENCY));
+			model.setPatience(getParameterAsInt(PARAMETER_PATIENCE));
+		} else {
+			model.setValidationFraction(0);
+		}
+		
+		model.setFoldNormalization(getParameterAsBoolean(PARAMETER_NORMALIZE)
+				&& getParameterAsBoolean(PARAMETER_FOLD_NORMALIZATION));
+		
+		model.setScoringBatchSize(getParameterAsInt(PARAMETER_SCORING_BATCH_SIZE));
+		model.setScoringThreads(getParameterAsInt(PARAMETER_SCORING_THREADS));
+		model.setTopConfidences(getParameterAsInt(PARAMETER_TOP_CONFIDENCES));
+		model.setJavaScoring(getParameterAsInt(PARAMETER_SCORING_ENGINE) == 1);
+		model.setPrecision(getPrecision());
+	}
+	
+	/**
+	 * Retrieve the precision the network is trained and scored with.
+	 * @return the data type of the arrays
+	 */
+	protected DataBuffer.Type getPrecision() throws OperatorException{
+		int index = getParameterAsInt(PARAMETER_PRECISION);
+		if (index == 0){
+			return Precision.getDefault();
+		}
+		return Precision.getType(PRECISION_NAMES[index]);
+	}
+	
 	protected OptimizationAlgorithm getOptimizationAlgorithm(int i){
 		switch (i) {
 		case 0 : 
@@ -158,8 +158,7 @@ public class ConvolutionalNeuralNetwork extends AbstractDLModelLearner {
 				
 				if(layer.getClass() == OutputLayer.class){
 
-					listBuilder.layer(i,((OutputLayer)layer).getLayer(false,
-							exampleSet.getAttributes().getLabel().getMapping().getValues().size()));
+					listBuilder.layer(i,((OutputLayer)layer).getLayer(false, getNumOutputs(exampleSet)));
 					layerNames.add(layer.getLayerName());
 					
 				} else {
@@ -205,6 +204,7 @@ public class ConvolutionalNeuralNetwork extends AbstractDLModelLearner {
 		// construct the configuration information and train the model
 		
 	    MultiLayerConfiguration config = listBuilder.build();
+	    configureTraining(model);
 		model.train(exampleSet, config, shuffle, normalize,layerNames);
 		
 		return model;
@@ -0,0 +1,500 @@
+package com.rapidminerchina.extension.dl4j.learners;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.example.Attributes;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.ExampleSetFactory;
+import com.rapidminer.example.Tools;
+import com.rapidminer.example.set.SplittedExampleSet;
+import com.rapidminer.operator.Model;
+import com.rapidminer.operator.OperatorDescription;
+import com.rapidminer.operator.OperatorException;
+import com.rapidminer.operator.ports.OutputPort;
+import com.rapidminer.parameter.ParameterType;
+import com.rapidminer.parameter.ParameterTypeCategory;
+import com.rapidminer.parameter.ParameterTypeDouble;
+import com.rapidminer.parameter.ParameterTypeInt;
+import com.rapidminer.parameter.ParameterTypeString;
+import com.rapidminer.parameter.conditions.EqualTypeCondition;
+import com.rapidminer.tools.RandomGenerator;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetConverter;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+import com.rapidminerchina.extension.dl4j.data.RunningStatistics;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
+
+/**
+ * A neural network learner that searches for the learning rate, the momentum and the size of the hidden layers.
+ *
+ * The examples are converted and normalized only once and shared by all trials,
+ * instead of being converted again for each trial as when the learner is nested in a parameter optimization.
+ * The trials are trained in parallel on a bounded number of threads and scored on held-out validation examples.
+ * With successive halving, all trials are trained for the given number of epochs per round,
+ * and only the better half of them is trained further in the next round, so poor trials are dropped early.
+ *
+ * Each trial is trained on the whole training part as one batch. Mini batches, early stopping, checkpoints
+ * and an initial model are not supported, the learner fails if they are set.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class NeuralNetworkSearch extends SimpleNeuralNetwork {
+
+	protected OutputPort resultPort = getOutputPorts().createPort("results");
+
+	/**
+	 * The parameter name for &quot;The learning rates to try, separated by commas.&quot;
+	 */
+	public static final String PARAMETER_LEARNING_RATE_VALUES = "learning_rate_values";
+
+	/**
+	 * The parameter name for &quot;The momentums to try, separated by commas.&quot;
+	 */
+	public static final String PARAMETER_MOMENTUM_VALUES = "momentum_values";
+
+	/**
+	 * The parameter name for &quot;The factors applied to the number of nodes of the hidden layers, separated by commas.&quot;
+	 */
+	public static final String PARAMETER_LAYER_SIZE_FACTORS = "layer_size_factors";
+
+	/**
+	 * The parameter name for &quot;How the trials are chosen from the values.&quot;
+	 */
+	public static final String PARAMETER_SEARCH_STRATEGY = "search_strategy";
+
+	/**
+	 * The category &quot;search strategy&quot;
+	 */
+	public static final String[] SEARCH_STRATEGY_NAMES = new String[]{
+			"grid"
+			,"random"
+	};
+
+	/**
+	 * The parameter name for &quot;The number of trials drawn from the values in a random search.&quot;
+	 */
+	public static final String PARAMETER_RANDOM_TRIALS = "random_trials";
+
+	/**
+	 * The parameter name for &quot;The number of rounds of successive halving.&quot;
+	 */
+	public static final String PARAMETER_HALVING_ROUNDS = "halving_rounds";
+
+	/**
+	 * The parameter name for &quot;The fraction of the examples held out to score the trials.&quot;
+	 */
+	public static final String PARAMETER_SEARCH_VALIDATION_FRACTION = "search_validation_fraction";
+
+	/**
+	 * The parameter name for &quot;The number of trials trained at the same time.&quot;
+	 */
+	public static final String PARAMETER_PARALLEL_TRIALS = "parallel_trials";
+
+	/**
+	 * The names of the columns of the results table.
+	 */
+	private static final String[] RESULT_NAMES = new String[]{
+			"trial", "learning_rate", "momentum", "layer_size_factor", "rounds", "validation_score"
+	};
+
+	/**
+	 * One combination of values and the network trained with it.
+	 */
+	private static class Trial {
+
+		private final int index;
+
+		private final double learningRate;
+
+		private final double momentum;
+
+		private final double layerSizeFactor;
+
+		private final List<String> layerNames = new ArrayList<String>();
+
+		private MultiLayerNetwork network;
+
+		private int rounds = 0;
+
+		private double score = Double.NaN;
+
+		Trial(int index, double learningRate, double momentum, double layerSizeFactor){
+			this.index = index;
+			this.learningRate = learningRate;
+			this.momentum = momentum;
+			this.layerSizeFactor = layerSizeFactor;
+		}
+	}
+
+	/**
+	 * The task training one trial for one round and scoring it.
+	 * The converted examples are shared by all tasks, only a trial with dropout works on its own copy,
+	 * as dropout changes the input of its layers during training.
+	 */
+	private static class TrialTask implements Callable<Trial> {
+
+		private final Trial trial;
+
+		private final DataSet training;
+
+		private final DataSet validation;
+
+		private final int epochs;
+
+		TrialTask(Trial trial, DataSet training, DataSet validation, int epochs){
+			this.trial = trial;
+			this.training = training;
+			this.validation = validation;
+			this.epochs = epochs;
+		}
+
+		@Override
+		public Trial call() throws Exception {
+			boolean copy = usesDropout(trial.network.getLayerWiseConfigurations());
+			DataSet data = copy ? new DataSet(training.getFeatures().dup(), training.getLabels().dup()) : training;
+			for (int i=0; i<epochs; i++){
+				trial.network.fit(data);
+			}
+			trial.score = trial.network.score(copy ? new DataSet(validation.getFeatures().dup(), validation.getLabels().dup()) : validation);
+			trial.rounds++;
+			return trial;
+		}
+	}
+
+	/**
+	 * Retrieve whether any layer of a configuration uses dropout or drop connect.
+	 */
+	private static boolean usesDropout(MultiLayerConfiguration configuration){
+		for (int l=0; l<configuration.getConfs().size(); l++){
+			NeuralNetConfiguration conf = configuration.getConf(l);
+			if (conf.getLayer().getDropOut() > 0 || conf.isUseDropConnect()){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The results table of the last search, delivered after the model.
+	 */
+	private ExampleSet results = null;
+
+	public NeuralNetworkSearch(OperatorDescription description) {
+		super(description);
+		getTransformer().addGenerationRule(resultPort, ExampleSet.class);
+	}
+
+	@Override
+	public void doWork() throws OperatorException {
+		results = null;
+		super.doWork();
+		resultPort.deliver(results);
+		results = null;
+	}
+
+	@Override
+	public Model learn(ExampleSet exampleSet) throws OperatorException {
+
+		Tools.onlyNonMissingValues(exampleSet, getOperatorClassName(), this, new String[0]);
+		checkUnsupported();
+
+		// all trials are created, converted and trained in the precision of the learner
+		Precision.enter(getPrecision(), this);
+		try {
+			return search(exampleSet);
+		} finally {
+			Precision.leave();
+		}
+	}
+
+	/**
+	 * Train and score the trials and deliver the best of them as the model.
+	 */
+	private Model search(ExampleSet exampleSet) throws OperatorException {
+
+		boolean useLocalRandomSeed = getParameterAsBoolean(PARAMETER_USE_LOCAL_RANDOM_SEED);
+		int seed = getParameterAsInt(PARAMETER_LOCAL_RANDOM_SEED);
+
+		// the trials, each with its own configuration built on this thread
+		List<Trial> trials = createTrials(RandomGenerator.getRandomGenerator(useLocalRandomSeed, seed));
+		List<Trial> alive = new ArrayList<Trial>(trials);
+		for (Trial trial : trials){
+			MultiLayerConfiguration config = buildConfiguration(exampleSet, trial.learningRate, trial.momentum,
+					trial.layerSizeFactor, trial.layerNames);
+			trial.network = new MultiLayerNetwork(config);
+			trial.network.init();
+		}
+
+		// convert and normalize the examples once for all trials
+		SplittedExampleSet trainingSet = new SplittedExampleSet(exampleSet, 1 - getParameterAsDouble(PARAMETER_SEARCH_VALIDATION_FRACTION),
+				SplittedExampleSet.SHUFFLED_SAMPLING, useLocalRandomSeed, seed);
+		SplittedExampleSet validationSet = new SplittedExampleSet(trainingSet);
+		trainingSet.selectSingleSubset(0);
+		validationSet.selectSingleSubset(1);
+		if (trainingSet.size() == 0 || validationSet.size() == 0){
+			throw new OperatorException("Too few examples to hold out validation examples in " + getName() + ".");
+		}
+
+		boolean normalize = getParameterAsBoolean(PARAMETER_NORMALIZE);
+		ExampleSetConverter converter = new ExampleSetConverter(exampleSet, true);
+		RunningStatistics statistics = normalize ? new RunningStatistics(converter.getNumFeatures()) : null;
+		DataSet training = converter.convert(trainingSet, statistics);
+		DataSet validation = converter.convert(validationSet);
+		if (normalize){
+			INDArray means = statistics.getMeans();
+			INDArray stds = statistics.getStandardDeviations(Nd4j.EPS_THRESHOLD);
+			ExampleSetConverter.normalize(training.getFeatures(), means, stds);
+			ExampleSetConverter.normalize(validation.getFeatures(), means, stds);
+		}
+
+		int epochs = getParameterAsInt(PARAMETER_EPOCHS);
+		int rounds = getParameterAsInt(PARAMETER_HALVING_ROUNDS);
+		int threads = Math.min(getParameterAsInt(PARAMETER_PARALLEL_TRIALS), trials.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DL4J search trial");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			for (int round=0; round<rounds; round++){
+
+				List<Callable<Trial>> tasks = new ArrayList<Callable<Trial>>();
+				for (Trial trial : alive){
+					tasks.add(new TrialTask(trial, training, validation, epochs));
+				}
+				for (Future<Trial> future : executor.invokeAll(tasks)){
+					future.get();
+				}
+				checkForStop();
+
+				// keep the better half of the trials for the next round
+				Collections.sort(alive, new Comparator<Trial>() {
+
+					@Override
+					public int compare(Trial a, Trial b) {
+						return Double.compare(score(a), score(b));
+					}
+				});
+				if (round < rounds - 1 && alive.size() > 1){
+					for (Trial dropped : alive.subList((alive.size() + 1) / 2, alive.size())){
+						dropped.network = null;
+					}
+					alive = new ArrayList<Trial>(alive.subList(0, (alive.size() + 1) / 2));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperatorException("Interrupted while training the trials of " + getName() + ".", e);
+		} catch (ExecutionException e) {
+			throw new OperatorException("Failed to train a trial of " + getName() + ": " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Trial best = alive.get(0);
+		MultiLayerNetModel model = new MultiLayerNetModel(exampleSet);
+		configureTraining(model);
+		model.setTrainedNetwork(best.network, best.layerNames, statistics);
+
+		results = createResults(trials);
+		return model;
+	}
+
+	/**
+	 * Fail if parameters or ports of the learner are set which the search does not support,
+	 * instead of silently ignoring them.
+	 */
+	private void checkUnsupported() throws OperatorException{
+		if (getParameterAsBoolean(PARAMETER_MINIBATCH) && getParameterAsInt(PARAMETER_BATCH_SIZE) > 0){
+			throw new OperatorException(getName() + " trains each trial on the whole example set as one batch, "
+					+ "please set the parameter " + PARAMETER_BATCH_SIZE + " to 0.");
+		}
+		if (getParameterAsBoolean(PARAMETER_EARLY_STOPPING)){
+			throw new OperatorException(getName() + " scores the trials after each round instead of stopping them early, "
+					+ "please switch off the parameter " + PARAMETER_EARLY_STOPPING + ".");
+		}
+		if (isParameterSet(PARAMETER_CHECKPOINT_DIRECTORY)){
+			throw new OperatorException(getName() + " does not write checkpoints, "
+					+ "please clear the parameter " + PARAMETER_CHECKPOINT_DIRECTORY + ".");
+		}
+		if (initialModelPort.isConnected()){
+			throw new OperatorException(getName() + " trains new networks and cannot continue from an initial model, "
+					+ "please disconnect the initial model port.");
+		}
+	}
+
+	@Override
+	public List<ParameterType> getParameterTypes() {
+		List<ParameterType> types = super.getParameterTypes();
+
+		ParameterType type = null;
+
+		types.add(new ParameterTypeString(
+				PARAMETER_LEARNING_RATE_VALUES,
+				"The learning rates to try, separated by commas. If empty, only the learning rate of the learner is used.",
+				"0.1,0.01,0.001",
+				false));
+
+		types.add(new ParameterTypeString(
+				PARAMETER_MOMENTUM_VALUES,
+				"The momentums to try, separated by commas. If empty, only the momentum of the learner is used.",
+				"",
+				false));
+
+		types.add(new ParameterTypeString(
+				PARAMETER_LAYER_SIZE_FACTORS,
+				"The factors applied to the number of nodes of the dense and RBM hidden layers, separated by commas. "
+				+ "If empty, the layers keep their number of nodes.",
+				"",
+				false));
+
+		types.add(new ParameterTypeCategory(
+				PARAMETER_SEARCH_STRATEGY,
+				"How the trials are chosen: all combinations of the values, or a number of combinations drawn at random.",
+				SEARCH_STRATEGY_NAMES,
+				0,
+				false));
+
+		type = new ParameterTypeInt(
+				PARAMETER_RANDOM_TRIALS,
+				"The number of combinations of the values drawn at random.",
+				1, Integer.MAX_VALUE, 10,
+				false);
+		type.registerDependencyCondition(
+				new EqualTypeCondition(
+						this,
+						PARAMETER_SEARCH_STRATEGY,
+						SEARCH_STRATEGY_NAMES,
+						false, 1));
+		types.add(type);
+
+		types.add(new ParameterTypeInt(
+				PARAMETER_HALVING_ROUNDS,
+				"The number of rounds. Each round trains the remaining trials for the given number of epochs "
+				+ "and keeps the better half of them for the next round.",
+				1, Integer.MAX_VALUE, 3,
+				false));
+
+		types.add(new ParameterTypeDouble(
+				PARAMETER_SEARCH_VALIDATION_FRACTION,
+				"The fraction of the examples held out to score the trials.",
+				0.01, 0.99, 0.2,
+				false));
+
+		types.add(new ParameterTypeInt(
+				PARAMETER_PARALLEL_TRIALS,
+				"The number of trials trained at the same time, each on its own thread.",
+				1, Integer.MAX_VALUE, Runtime.getRuntime().availableProcessors(),
+				false));
+
+		return types;
+	}
+
+	/**
+	 * Create the trials from the values of the parameters, all combinations for a grid search,
+	 * otherwise a number of distinct combinations drawn at random.
+	 */
+	private List<Trial> createTrials(Random random) throws OperatorException{
+
+		double[] learningRates = getValues(PARAMETER_LEARNING_RATE_VALUES, getParameterAsDouble(PARAMETER_LEARNING_RATE));
+		double[] momentums = getValues(PARAMETER_MOMENTUM_VALUES, getParameterAsDouble(PARAMETER_MOMENTUM));
+		double[] factors = getValues(PARAMETER_LAYER_SIZE_FACTORS, 1);
+
+		List<double[]> combinations = new ArrayList<double[]>();
+		for (double learningRate : learningRates){
+			for (double momentum : momentums){
+				for (double factor : factors){
+					combinations.add(new double[]{learningRate, momentum, factor});
+				}
+			}
+		}
+
+		if (getParameterAsInt(PARAMETER_SEARCH_STRATEGY) == 1){
+			Collections.shuffle(combinations, random);
+			combinations = combinations.subList(0, Math.min(combinations.size(), getParameterAsInt(PARAMETER_RANDOM_TRIALS)));
+		}
+
+		List<Trial> trials = new ArrayList<Trial>();
+		for (double[] combination : combinations){
+			trials.add(new Trial(trials.size() + 1, combination[0], combination[1], combination[2]));
+		}
+		return trials;
+	}
+
+	/**
+	 * Parse a list of values separated by commas.
+	 *
+	 * @param key the name of the parameter
+	 * @param defaultValue the only value if the list is empty
+	 */
+	private double[] getValues(String key, double defaultValue) throws OperatorException{
+
+		String text = getParameterAsString(key);
+		if (text == null || text.trim().isEmpty()){
+			return new double[]{defaultValue};
+		}
+
+		String[] parts = text.split(",");
+		double[] values = new double[parts.length];
+		for (int i=0; i<parts.length; i++){
+			try {
+				values[i] = Double.parseDouble(parts[i].trim());
+			} catch (NumberFormatException e) {
+				throw new OperatorException("The value " + parts[i].trim() + " of the parameter " + key + " is not a number.");
+			}
+			if (values[i] <= 0 && !PARAMETER_MOMENTUM_VALUES.equals(key)){
+				throw new OperatorException("The values of the parameter " + key + " must be positive.");
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Retrieve the score of a trial to rank it, trials with an invalid score are ranked last.
+	 */
+	private static double score(Trial trial){
+		return Double.isNaN(trial.score) ? Double.POSITIVE_INFINITY : trial.score;
+	}
+
+	/**
+	 * Create the results table with one row per trial, in the order the trials were created.
+	 */
+	private ExampleSet createResults(List<Trial> trials){
+
+		double[][] data = new double[trials.size()][];
+		for (int i=0; i<trials.size(); i++){
+			Trial trial = trials.get(i);
+			data[i] = new double[]{trial.index, trial.learningRate, trial.momentum, trial.layerSizeFactor, trial.rounds, trial.score};
+		}
+
+		ExampleSet result = ExampleSetFactory.createExampleSet(data);
+		Attributes attributes = result.getAttributes();
+		for (int j=0; j<RESULT_NAMES.length; j++){
+			attributes.get("att" + (j + 1)).setName(RESULT_NAMES[j]);
+		}
+		return result;
+	}
+}
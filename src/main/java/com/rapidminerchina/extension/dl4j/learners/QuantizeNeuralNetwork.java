@@ -0,0 +1,232 @@
+package com.rapidminerchina.extension.dl4j.learners;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import com.rapidminer.example.Attribute;
+import com.rapidminer.example.Attributes;
+import com.rapidminer.example.Example;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.ExampleSetFactory;
+import com.rapidminer.example.set.SplittedExampleSet;
+import com.rapidminer.operator.Operator;
+import com.rapidminer.operator.OperatorDescription;
+import com.rapidminer.operator.OperatorException;
+import com.rapidminer.operator.UserError;
+import com.rapidminer.operator.learner.PredictionModel;
+import com.rapidminer.operator.ports.InputPort;
+import com.rapidminer.operator.ports.OutputPort;
+import com.rapidminer.parameter.ParameterType;
+import com.rapidminer.parameter.ParameterTypeBoolean;
+import com.rapidminer.parameter.ParameterTypeInt;
+import com.rapidminer.parameter.conditions.BooleanParameterCondition;
+import com.rapidminer.tools.LogService;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
+import com.rapidminerchina.extension.dl4j.model.QuantizedNetModel;
+
+/**
+ * An operator that quantizes the weights of a trained neural network to 8-bit integers,
+ * so the model takes a fraction of the memory when it is applied.
+ *
+ * The scales of the inputs of the layers are calibrated on a sample of the given examples.
+ * Both the original and the quantized model are applied to the remaining examples, and a report of their accuracy,
+ * or of their root mean squared error for a numerical label, and of the memory of their parameters is delivered.
+ * If the sample takes all examples, the models are compared on the sample itself.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class QuantizeNeuralNetwork extends Operator {
+
+	protected InputPort modelInput = getInputPorts().createPort("model", MultiLayerNetModel.class);
+	protected InputPort exampleInput = getInputPorts().createPort("example set", ExampleSet.class);
+	protected OutputPort modelOutput = getOutputPorts().createPort("model");
+	protected OutputPort originalOutput = getOutputPorts().createPort("original");
+	protected OutputPort exampleOutput = getOutputPorts().createPort("example set");
+	protected OutputPort reportOutput = getOutputPorts().createPort("report");
+
+	/**
+	 * The parameter name for &quot;The number of examples the quantization is calibrated on.&quot;
+	 */
+	public static final String PARAMETER_CALIBRATION_EXAMPLES = "calibration_examples";
+
+	/**
+	 * Indicates if to use one scale per output unit or filter instead of one scale per weight array.
+	 */
+	public static final String PARAMETER_PER_CHANNEL = "per_channel_scales";
+
+	/**
+	 * Indicates if to use local random seed.
+	 */
+	public static final String PARAMETER_USE_LOCAL_RANDOM_SEED = "use_local_random_seed";
+
+	/**
+	 * The name for &quot;The value of local random seed.&quot;
+	 */
+	public static final String PARAMETER_LOCAL_RANDOM_SEED = "local_random_seed";
+
+	public QuantizeNeuralNetwork(OperatorDescription description) {
+		super(description);
+		getTransformer().addPassThroughRule(modelInput, modelOutput);
+		getTransformer().addPassThroughRule(modelInput, originalOutput);
+		getTransformer().addPassThroughRule(exampleInput, exampleOutput);
+		getTransformer().addGenerationRule(reportOutput, ExampleSet.class);
+	}
+
+	@Override
+	public List<ParameterType> getParameterTypes() {
+		List<ParameterType> types = super.getParameterTypes();
+
+		types.add(new ParameterTypeInt(
+				PARAMETER_CALIBRATION_EXAMPLES,
+				"The number of examples drawn from the example set to calibrate the quantization, 0 to take all examples. "
+				+ "The models are compared on the remaining examples, or on all examples if none remain.",
+				0, Integer.MAX_VALUE, 1000,
+				false));
+
+		types.add(new ParameterTypeBoolean(
+				PARAMETER_PER_CHANNEL,
+				"Indicates if to quantize the weights of each output unit or filter with its own scale, "
+				+ "instead of one scale for all weights of a layer.",
+				true,
+				false));
+
+		ParameterType type = new ParameterTypeBoolean(
+				PARAMETER_USE_LOCAL_RANDOM_SEED,
+				"Indicates if to set the value of random seed.",
+				false);
+		type.setExpert(true);
+		types.add(type);
+
+		type = new ParameterTypeInt(
+				PARAMETER_LOCAL_RANDOM_SEED,
+				"The value of random seed",
+				1, Integer.MAX_VALUE, 1992);
+		type.setExpert(true);
+		type.registerDependencyCondition(
+				new BooleanParameterCondition(
+						this,
+						PARAMETER_USE_LOCAL_RANDOM_SEED,
+						false,true));
+		types.add(type);
+
+		return types;
+	}
+
+	@Override
+	public void doWork() throws OperatorException {
+
+		MultiLayerNetModel model = modelInput.getData(MultiLayerNetModel.class);
+		ExampleSet exampleSet = exampleInput.getData(ExampleSet.class);
+
+		if (exampleSet.getAttributes().getLabel() == null) {
+			throw new UserError(this, 105);
+		}
+		if (exampleSet.size() == 0){
+			throw new UserError(this, 117);
+		}
+		if (model instanceof QuantizedNetModel){
+			throw new OperatorException("The model has already been quantized.");
+		}
+
+		// the sample the quantization is calibrated on, and the held-out examples the models are compared on
+		ExampleSet sample = exampleSet;
+		ExampleSet heldOut = exampleSet;
+		int size = getParameterAsInt(PARAMETER_CALIBRATION_EXAMPLES);
+		if (size > 0 && size < exampleSet.size()){
+			SplittedExampleSet split = new SplittedExampleSet(exampleSet, (double) size / exampleSet.size(),
+					SplittedExampleSet.SHUFFLED_SAMPLING,
+					getParameterAsBoolean(PARAMETER_USE_LOCAL_RANDOM_SEED),
+					getParameterAsInt(PARAMETER_LOCAL_RANDOM_SEED));
+			SplittedExampleSet rest = new SplittedExampleSet(split);
+			split.selectSingleSubset(0);
+			rest.selectSingleSubset(1);
+			sample = split;
+			heldOut = rest;
+		} else {
+			LogService.getRoot().log(Level.WARNING, "All examples are taken to calibrate the quantization, "
+					+ "the models are compared on the examples they were calibrated on.");
+		}
+
+		QuantizedNetModel quantized = QuantizedNetModel.quantize(model, sample, getParameterAsBoolean(PARAMETER_PER_CHANNEL));
+		checkForStop();
+
+		double originalScore = evaluate(model, heldOut);
+		checkForStop();
+		double quantizedScore = evaluate(quantized, heldOut);
+
+		modelOutput.deliver(quantized);
+		originalOutput.deliver(model);
+		exampleOutput.deliver(exampleSet);
+		reportOutput.deliver(createReport(exampleSet.getAttributes().getLabel().isNominal(),
+				originalScore, quantizedScore, quantized, sample.size(), heldOut.size()));
+	}
+
+	/**
+	 * Apply a model to a copy of the examples and compute its accuracy,
+	 * or its root mean squared error for a numerical label. The predictions are removed afterwards.
+	 */
+	private double evaluate(MultiLayerNetModel model, ExampleSet exampleSet) throws OperatorException{
+
+		ExampleSet applied = model.apply((ExampleSet) exampleSet.clone());
+		Attribute label = applied.getAttributes().getLabel();
+		Attribute predicted = applied.getAttributes().getPredictedLabel();
+
+		double sum = 0;
+		for (Example example : applied){
+			if (label.isNominal()){
+				if (example.getNominalValue(label).equals(example.getNominalValue(predicted))){
+					sum++;
+				}
+			} else {
+				double error = example.getValue(label) - example.getValue(predicted);
+				sum += error * error;
+			}
+		}
+
+		PredictionModel.removePredictedLabel(applied);
+
+		return label.isNominal() ? sum / applied.size() : Math.sqrt(sum / applied.size());
+	}
+
+	/**
+	 * Create the report with one row comparing the original and the quantized model.
+	 */
+	private ExampleSet createReport(boolean nominal, double originalScore, double quantizedScore,
+			QuantizedNetModel quantized, int calibrationExamples, int evaluationExamples){
+
+		String metric = nominal ? "accuracy" : "root_mean_squared_error";
+		String[] names = new String[]{
+				"original_" + metric
+				,"quantized_" + metric
+				,metric + "_delta"
+				,"original_bytes"
+				,"quantized_bytes"
+				,"saved_bytes"
+				,"saved_fraction"
+				,"calibration_examples"
+				,"evaluation_examples"
+		};
+
+		long originalBytes = quantized.getOriginalBytes();
+		long quantizedBytes = quantized.getQuantizedBytes();
+		double[][] data = new double[][]{{
+				originalScore
+				,quantizedScore
+				,quantizedScore - originalScore
+				,originalBytes
+				,quantizedBytes
+				,originalBytes - quantizedBytes
+				,originalBytes > 0 ? (double) (originalBytes - quantizedBytes) / originalBytes : 0
+				,calibrationExamples
+				,evaluationExamples
+		}};
+
+		ExampleSet report = ExampleSetFactory.createExampleSet(data);
+		Attributes attributes = report.getAttributes();
+		for (int j=0; j<names.length; j++){
+			attributes.get("att" + (j + 1)).setName(names[j]);
+		}
+		return report;
+	}
+}
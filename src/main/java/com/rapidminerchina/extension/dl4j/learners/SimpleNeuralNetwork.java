@@ -7,6 +7,7 @@ import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration.ListBuilder;
+import org.deeplearning4j.nn.conf.layers.Layer;
 
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.example.Tools;
@@ -16,7 +17,9 @@ import com.rapidminer.operator.OperatorDescription;
 import com.rapidminer.operator.OperatorException;
 import com.rapidminerchina.extension.dl4j.layers.AbstractLayer;
 import com.rapidminerchina.extension.dl4j.layers.ConvolutionalLayer;
+import com.rapidminerchina.extension.dl4j.layers.DenseLayer;
 import com.rapidminerchina.extension.dl4j.layers.OutputLayer;
+import com.rapidminerchina.extension.dl4j.layers.RBMLayer;
 import com.rapidminerchina.extension.dl4j.layers.SubSamplingLayer;
 import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
 
@@ -34,28 +37,50 @@ public class SimpleNeuralNetwork extends AbstractDLModelLearner {
 		
 		MultiLayerNetModel model = new MultiLayerNetModel(exampleSet);
 		
+		// for expert features
+		// shuffle
+		boolean shuffle = getParameterAsBoolean(PARAMETER_SHUFFLE);
+		
+		// normalize
+		boolean normalize = getParameterAsBoolean(PARAMETER_NORMALIZE);
+		
+		List<String> layerNames = new ArrayList<String>();
+		MultiLayerConfiguration config = buildConfiguration(exampleSet, 
+				getParameterAsDouble(PARAMETER_LEARNING_RATE), getParameterAsDouble(PARAMETER_MOMENTUM), 1, layerNames);
+		
+        // train the model
+	    configureTraining(model);
+		model.train(exampleSet, config, shuffle, normalize, layerNames);
+		return model;
+	}
+	
+	/**
+	 * Build the configuration of the network from the parameters of this operator and the nested layers.
+	 * 
+	 * @param exampleSet the training exampleset
+	 * @param learningRate the learning rate
+	 * @param momentum the momentum
+	 * @param layerSizeFactor the factor applied to the number of nodes of each hidden layer, 1 to keep the numbers of the layers
+	 * @param layerNames the list the names of the layers are added to
+	 * @return the configuration of the network
+	 * @throws OperatorException if the structure of the layers is not supported
+	 */
+	protected MultiLayerConfiguration buildConfiguration(ExampleSet exampleSet, double learningRate, double momentum,
+			double layerSizeFactor, List<String> layerNames) throws OperatorException{
+		
 		// retrieve information
 		// for the whole model
 		
 		// iteration
 		int iteration = getParameterAsInt(PARAMETER_ITERATION);
 		
-		// learning rate, decay and momentum
-		double learningRate = getParameterAsDouble(PARAMETER_LEARNING_RATE);
+		// decay
 		double decay = getParameterAsDouble(PARAMETER_DECAY);
-		double momentum = getParameterAsDouble(PARAMETER_MOMENTUM);
 		
 		// optimize function
 		int optimizationAlgorithmIndex = getParameterAsInt(PARAMETER_OPTIMIZATION_ALGORITHM);
 		OptimizationAlgorithm optimizationAlgorithm = getOptimizationAlgorithm(optimizationAlgorithmIndex);
 		
-		// for expert features
-		// shuffle
-		boolean shuffle = getParameterAsBoolean(PARAMETER_SHUFFLE);
-		
-		// normalize
-		boolean normalize = getParameterAsBoolean(PARAMETER_NORMALIZE);
-		
 		// regularization
 		boolean regularization = getParameterAsBoolean(PARAMETER_REGULARIZATION);
 		double l1 = getParameterAsDouble(PARAMETER_L1);
@@ -90,7 +115,6 @@ public class SimpleNeuralNetwork extends AbstractDLModelLearner {
 		
 		ListBuilder listBuilder = configBuilder.list(structure.size());
 		
-		List<String> layerNames = new ArrayList<String>();
 		int inSize = exampleSet.getAttributes().size();
 		
 		for (int i=0; i<structure.size(); i++){
@@ -100,8 +124,7 @@ public class SimpleNeuralNetwork extends AbstractDLModelLearner {
 				
 				if(layer.getClass() == OutputLayer.class){
 
-					listBuilder.layer(i,((OutputLayer)layer).getLayer(inSize,
-							exampleSet.getAttributes().getLabel().getMapping().getValues().size()));
+					listBuilder.layer(i,((OutputLayer)layer).getLayer(inSize, getNumOutputs(exampleSet)));
 					layerNames.add(layer.getLayerName());
 					
 				} else {
@@ -118,17 +141,33 @@ public class SimpleNeuralNetwork extends AbstractDLModelLearner {
 				}
 				
 				
-				listBuilder.layer(i,layer.getLayer(inSize));
-				inSize = layer.getNumNodes();
+				if (layerSizeFactor == 1){
+					listBuilder.layer(i,layer.getLayer(inSize));
+					inSize = layer.getNumNodes();
+				} else {
+					int size = Math.max(1, (int) Math.round(layer.getNumNodes() * layerSizeFactor));
+					listBuilder.layer(i,resizeLayer(layer, inSize, size));
+					inSize = size;
+				}
 				layerNames.add(layer.getLayerName());
 				
 			}
 		}
 		
-        // construct the configuration information and train the model
-	    MultiLayerConfiguration config = listBuilder.build();
-		model.train(exampleSet, config, shuffle, normalize, layerNames);
-		return model;
+        // construct the configuration information
+	    return listBuilder.build();
+	}
+	
+	/**
+	 * Retrieve the configuration of a hidden layer with another number of nodes.
+	 */
+	private Layer resizeLayer(AbstractLayer layer, int in, int out) throws OperatorException{
+		if (layer.getClass() == DenseLayer.class){
+			return ((DenseLayer) layer).getLayer(in, out);
+		} else if (layer.getClass() == RBMLayer.class){
+			return ((RBMLayer) layer).getLayer(in, out);
+		}
+		throw new OperatorException("The number of nodes of the layer " + layer.getLayerName() + " cannot be changed.");
 	}
 
 }
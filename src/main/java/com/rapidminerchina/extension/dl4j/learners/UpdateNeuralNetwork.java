@@ -0,0 +1,86 @@
+package com.rapidminerchina.extension.dl4j.learners;
+
+import java.util.List;
+
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.operator.Operator;
+import com.rapidminer.operator.OperatorDescription;
+import com.rapidminer.operator.OperatorException;
+import com.rapidminer.operator.UserError;
+import com.rapidminer.operator.ports.InputPort;
+import com.rapidminer.operator.ports.OutputPort;
+import com.rapidminer.parameter.ParameterType;
+import com.rapidminer.parameter.ParameterTypeBoolean;
+import com.rapidminer.parameter.ParameterTypeInt;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
+
+/**
+ * An operator that updates a trained neural network with a new batch of examples,
+ * e.g. a micro-batch of a stream, without training the network again from scratch.
+ *
+ * The network of the model is fitted on the batch in place,
+ * so the model delivered is the same object as the model received.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class UpdateNeuralNetwork extends Operator {
+
+	protected InputPort modelInput = getInputPorts().createPort("model", MultiLayerNetModel.class);
+	protected InputPort exampleInput = getInputPorts().createPort("example set", ExampleSet.class);
+	protected OutputPort modelOutput = getOutputPorts().createPort("model");
+	protected OutputPort exampleOutput = getOutputPorts().createPort("example set");
+
+	/**
+	 * The parameter name for &quot;The number of times the network is fitted on each batch.&quot;
+	 */
+	public static final String PARAMETER_STEPS = "steps";
+
+	/**
+	 * Indicates if to update the normalization statistics of the model with each batch.
+	 */
+	public static final String PARAMETER_UPDATE_STATISTICS = "update_normalization_statistics";
+
+	public UpdateNeuralNetwork(OperatorDescription description) {
+		super(description);
+		getTransformer().addPassThroughRule(modelInput, modelOutput);
+		getTransformer().addPassThroughRule(exampleInput, exampleOutput);
+	}
+
+	@Override
+	public List<ParameterType> getParameterTypes() {
+		List<ParameterType> types = super.getParameterTypes();
+
+		types.add(new ParameterTypeInt(
+				PARAMETER_STEPS,
+				"The number of times the network is fitted on each batch, each time with the number of iterations the network was trained with.",
+				1, Integer.MAX_VALUE, 1,
+				false));
+
+		types.add(new ParameterTypeBoolean(
+				PARAMETER_UPDATE_STATISTICS,
+				"Indicates if to update the means and standard deviations used to normalize the input data with each batch.",
+				true,
+				false));
+
+		return types;
+	}
+
+	@Override
+	public void doWork() throws OperatorException {
+
+		MultiLayerNetModel model = modelInput.getData(MultiLayerNetModel.class);
+		ExampleSet exampleSet = exampleInput.getData(ExampleSet.class);
+
+		if (exampleSet.getAttributes().getLabel() == null) {
+			throw new UserError(this, 105);
+		}
+
+		if (exampleSet.size() > 0){
+			model.update(exampleSet, getParameterAsInt(PARAMETER_STEPS), getParameterAsBoolean(PARAMETER_UPDATE_STATISTICS));
+		}
+
+		modelOutput.deliver(model);
+		exampleOutput.deliver(exampleSet);
+	}
+}
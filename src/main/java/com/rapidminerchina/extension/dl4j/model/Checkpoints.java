@@ -0,0 +1,255 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.tools.LogService;
+
+/**
+ * The checkpoints of a network being trained, kept in a local directory.
+ *
+ * A checkpoint contains the index of the finished epoch, the parameters of the network and the state of its updater.
+ * The network is snapshot on the training thread, which only copies memory,
+ * while the snapshot is written to disk on a background thread, so the training does not wait for the disk.
+ * Each checkpoint is written to a temporary file first and then renamed,
+ * thus the latest complete checkpoint survives a crash during writing.
+ * Only the latest checkpoint is kept, and it is deleted once the training has finished,
+ * so a later training in the same directory does not resume from the end of a finished one.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+class Checkpoints {
+
+	/**
+	 * The name of the checkpoint file in the directory.
+	 */
+	private static final String FILE_NAME = "checkpoint.bin";
+
+	/**
+	 * The marker at the beginning of each checkpoint file.
+	 */
+	private static final int MAGIC = 0x444c3443;
+
+	/**
+	 * The directory of the checkpoints.
+	 */
+	private final File directory;
+
+	/**
+	 * The background thread writing the checkpoints, in the order they are taken.
+	 */
+	private final ExecutorService writer;
+
+	/**
+	 * A checkpoint read from the disk.
+	 */
+	static class Checkpoint {
+
+		/**
+		 * The index of the last finished epoch.
+		 */
+		final int epoch;
+
+		/**
+		 * The parameters of the network.
+		 */
+		final INDArray parameters;
+
+		/**
+		 * The state of the updater of the network.
+		 */
+		final Updater updater;
+
+		Checkpoint(int epoch, INDArray parameters, Updater updater){
+			this.epoch = epoch;
+			this.parameters = parameters;
+			this.updater = updater;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory the directory of the checkpoints, created if it does not exist
+	 */
+	Checkpoints(File directory){
+		this.directory = directory;
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DL4J checkpoint writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Take a checkpoint of a network and write it in the background.
+	 *
+	 * @param epoch the index of the finished epoch
+	 * @param network the network being trained
+	 */
+	void save(final int epoch, MultiLayerNetwork network){
+
+		final INDArray parameters = network.params().dup();
+		final byte[] updater;
+		try {
+			updater = serialize(network.getUpdater());
+		} catch (IOException e) {
+			LogService.getRoot().log(Level.WARNING, "Failed to take the checkpoint of epoch " + epoch, e);
+			return;
+		}
+
+		writer.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					write(epoch, parameters, updater);
+				} catch (IOException e) {
+					LogService.getRoot().log(Level.WARNING, "Failed to write the checkpoint of epoch " + epoch
+							+ " to " + directory, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write a checkpoint to a temporary file and replace the last checkpoint with it.
+	 */
+	private void write(int epoch, INDArray parameters, byte[] updater) throws IOException{
+
+		if (!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Cannot create the directory " + directory);
+		}
+
+		File temporary = new File(directory, FILE_NAME + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(epoch);
+			Nd4j.write(parameters, out);
+			out.writeInt(updater.length);
+			out.write(updater);
+		} finally {
+			out.close();
+		}
+
+		// the last checkpoint is replaced in one step, so a crash leaves either the old or the new checkpoint
+		File file = new File(directory, FILE_NAME);
+		try {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Read the latest checkpoint in the directory.
+	 *
+	 * @return the latest checkpoint, null if there is none
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	Checkpoint load() throws IOException{
+
+		File file = new File(directory, FILE_NAME);
+		if (!file.isFile()){
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC){
+				throw new IOException("The file " + file + " is not a checkpoint");
+			}
+			int epoch = in.readInt();
+			INDArray parameters = Nd4j.read(in);
+			byte[] updater = new byte[in.readInt()];
+			in.readFully(updater);
+			return new Checkpoint(epoch, parameters, deserialize(updater));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Wait until all checkpoints taken are written and stop the background thread.
+	 */
+	void close(){
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait until all checkpoints taken are written, stop the background thread and delete the checkpoint,
+	 * after the training has finished.
+	 */
+	void delete(){
+		close();
+		try {
+			Files.deleteIfExists(new File(directory, FILE_NAME).toPath());
+			Files.deleteIfExists(new File(directory, FILE_NAME + ".tmp").toPath());
+		} catch (IOException e) {
+			LogService.getRoot().log(Level.WARNING, "Failed to delete the checkpoint in " + directory
+					+ ", a later training resuming from it would start after the finished one", e);
+		}
+	}
+
+	/**
+	 * Serialize the updater into memory, so its state is captured before the training continues.
+	 */
+	private static byte[] serialize(Updater updater) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(updater);
+		} finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserialize an updater written by {@link #serialize(Updater)}.
+	 */
+	private static Updater deserialize(byte[] updater) throws IOException{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(updater));
+		try {
+			return (Updater) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Cannot restore the updater of the checkpoint", e);
+		} finally {
+			in.close();
+		}
+	}
+}
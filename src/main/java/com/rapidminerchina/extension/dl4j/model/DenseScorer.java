@@ -0,0 +1,370 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.nn.layers.feedforward.dense.DenseLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.rapidminer.operator.OperatorException;
+
+/**
+ * A scorer of a trained network of dense layers and an output layer written in plain Java.
+ *
+ * The weights of each layer are held in one flat float array, transposed so that the weights of one output unit
+ * are contiguous, and the outputs of a layer are computed by one fused loop of the dot products, the bias
+ * and the activation. Scoring allocates nothing, the outputs of the layers are written to the arrays of a
+ * {@link Workspace}, which each scoring thread creates once. For small networks, this avoids the overhead
+ * of ND4J per call, i.e. the native dispatch and the creation of arrays and views, which dominates their latency.
+ *
+ * The normalization of the features is folded into the first layer, so the scorer takes the features as they are.
+ * Networks with other layers or activation functions than those listed in {@link #ACTIVATION_NAMES}
+ * cannot be exported, see {@link #create(MultiLayerNetwork, INDArray, INDArray)}.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class DenseScorer {
+
+	/**
+	 * The names of the activation functions the scorer supports, as named by DL4J.
+	 */
+	public static final String[] ACTIVATION_NAMES = new String[]{
+			"identity"
+			,"relu"
+			,"leakyrelu"
+			,"tanh"
+			,"hardtanh"
+			,"sigmoid"
+			,"softsign"
+			,"softplus"
+			,"softmax"
+	};
+
+	protected static final int IDENTITY = 0;
+	protected static final int RELU = 1;
+	protected static final int LEAKY_RELU = 2;
+	protected static final int TANH = 3;
+	protected static final int HARD_TANH = 4;
+	protected static final int SIGMOID = 5;
+	protected static final int SOFTSIGN = 6;
+	protected static final int SOFTPLUS = 7;
+	protected static final int SOFTMAX = 8;
+
+	/**
+	 * The slope of the leaky rectifier for negative inputs, as in ND4J.
+	 */
+	private static final float LEAKY_RELU_ALPHA = 0.01f;
+
+	/**
+	 * The number of inputs of the network followed by the number of outputs of each layer.
+	 */
+	protected final int[] sizes;
+
+	/**
+	 * The weights of each layer, the weights of output unit j at [j * inputs, (j + 1) * inputs).
+	 */
+	private final float[][] weights;
+
+	/**
+	 * The biases of each layer.
+	 */
+	protected final float[][] biases;
+
+	/**
+	 * The activation function of each layer, as index of {@link #ACTIVATION_NAMES}.
+	 */
+	protected final int[] activations;
+
+	/**
+	 * The arrays one scoring thread writes the outputs of the hidden layers to.
+	 * A workspace must not be used by more than one thread at a time.
+	 */
+	public static class Workspace {
+
+		private final float[][] outputs;
+
+		protected Workspace(int[] sizes){
+			// the last layer writes to the output array given by the caller
+			outputs = new float[sizes.length - 2][];
+			for (int l=0; l<outputs.length; l++){
+				outputs[l] = new float[sizes[l + 1]];
+			}
+		}
+	}
+
+	/**
+	 * Create a scorer of the given layers.
+	 *
+	 * @param sizes the number of inputs of the network followed by the number of outputs of each layer
+	 * @param weights the weights of each layer, the weights of each output unit contiguous,
+	 *        null if a subclass computes the layers on its own
+	 * @param biases the biases of each layer
+	 * @param activations the activation function of each layer, as index of {@link #ACTIVATION_NAMES}
+	 */
+	protected DenseScorer(int[] sizes, float[][] weights, float[][] biases, int[] activations){
+		this.sizes = sizes;
+		this.weights = weights;
+		this.biases = biases;
+		this.activations = activations;
+	}
+
+	/**
+	 * Export a trained network into a scorer.
+	 *
+	 * @param network the trained network
+	 * @param means the means the features are normalized with, null if they are not normalized
+	 * @param stds the standard deviations the features are normalized with, null if they are not normalized
+	 * @return the scorer
+	 * @throws OperatorException if the network has other layers than dense layers followed by an output layer,
+	 *         or an activation function the scorer does not support
+	 */
+	public static DenseScorer create(MultiLayerNetwork network, INDArray means, INDArray stds) throws OperatorException{
+
+		String reason = checkSupported(network);
+		if (reason != null){
+			throw new OperatorException(reason);
+		}
+
+		int numLayers = network.getnLayers();
+		int[] sizes = new int[numLayers + 1];
+		float[][] weights = new float[numLayers][];
+		float[][] biases = new float[numLayers][];
+		int[] activations = new int[numLayers];
+
+		for (int l=0; l<numLayers; l++){
+
+			Layer layer = network.getLayer(l);
+			activations[l] = getActivation(layer.conf().getLayer().getActivationFunction());
+
+			INDArray w = layer.getParam("W");
+			INDArray b = layer.getParam("b");
+			int inputs = w.rows();
+			int outputs = w.columns();
+			if (l > 0 && inputs != sizes[l]){
+				throw new OperatorException("Layer " + l + " has " + inputs + " inputs instead of " + sizes[l] + ".");
+			}
+			sizes[l] = inputs;
+			sizes[l + 1] = outputs;
+
+			weights[l] = new float[inputs * outputs];
+			biases[l] = new float[outputs];
+			for (int j=0; j<outputs; j++){
+				double bias = b.getDouble(j);
+				for (int i=0; i<inputs; i++){
+					double weight = w.getDouble(i, j);
+					if (l == 0 && means != null && stds != null){
+						// fold (x - mean) / std into the first layer
+						weight /= stds.getDouble(i);
+						bias -= weight * means.getDouble(i);
+					}
+					weights[l][j * inputs + i] = (float) weight;
+				}
+				biases[l][j] = (float) bias;
+			}
+		}
+
+		return new DenseScorer(sizes, weights, biases, activations);
+	}
+
+	/**
+	 * Check whether a network consists of dense layers followed by an output layer,
+	 * with activation functions the scorer supports.
+	 *
+	 * @param network the trained network
+	 * @return null if the network is supported, otherwise the reason why not
+	 */
+	public static String checkSupported(MultiLayerNetwork network){
+
+		int numLayers = network.getnLayers();
+		if (numLayers == 0){
+			return "The network has no layers.";
+		}
+
+		for (int l=0; l<numLayers; l++){
+			Layer layer = network.getLayer(l);
+			boolean last = l == numLayers - 1;
+			if (layer.getClass() != (last ? OutputLayer.class : DenseLayer.class)){
+				return "Only networks of dense layers followed by an output layer can be scored in Java, "
+						+ "layer " + l + " is a " + LayerSummary.getTypeName(layer) + ".";
+			}
+			String activation = layer.conf().getLayer().getActivationFunction();
+			if (getActivation(activation) < 0){
+				return "The activation function " + activation + " of layer " + l + " cannot be scored in Java.";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieve the index of an activation function, -1 if it is not supported.
+	 * @param name the name of the activation function, as named by DL4J
+	 * @return the index in {@link #ACTIVATION_NAMES}
+	 */
+	protected static int getActivation(String name){
+		for (int i=0; i<ACTIVATION_NAMES.length; i++){
+			if (ACTIVATION_NAMES[i].equals(name)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieve the number of inputs, i.e. the number of features.
+	 * @return the number of inputs
+	 */
+	public int getNumInputs(){
+		return sizes[0];
+	}
+
+	/**
+	 * Retrieve the number of outputs, i.e. the number of label values or 1 for a numerical label.
+	 * @return the number of outputs
+	 */
+	public int getNumOutputs(){
+		return sizes[sizes.length - 1];
+	}
+
+	/**
+	 * Create the arrays one scoring thread needs.
+	 * @return a new workspace
+	 */
+	public Workspace createWorkspace(){
+		return new Workspace(sizes);
+	}
+
+	/**
+	 * Score one example.
+	 *
+	 * @param input the features of the example, at least {@link #getNumInputs()} values
+	 * @param output the array the outputs are written to, at least {@link #getNumOutputs()} values
+	 * @param workspace the workspace of the calling thread
+	 */
+	public void score(float[] input, float[] output, Workspace workspace){
+		score(input, 0, output, 0, workspace);
+	}
+
+	/**
+	 * Score a batch of examples, stored row by row.
+	 *
+	 * @param inputs the features of the examples, {@link #getNumInputs()} values per example
+	 * @param count the number of examples
+	 * @param outputs the array the outputs are written to, {@link #getNumOutputs()} values per example
+	 * @param workspace the workspace of the calling thread
+	 */
+	public void score(float[] inputs, int count, float[] outputs, Workspace workspace){
+		int numInputs = getNumInputs();
+		int numOutputs = getNumOutputs();
+		for (int r=0; r<count; r++){
+			score(inputs, r * numInputs, outputs, r * numOutputs, workspace);
+		}
+	}
+
+	/**
+	 * Score one example, read from and written to the given offsets.
+	 */
+	private void score(float[] input, int inputOffset, float[] output, int outputOffset, Workspace workspace){
+
+		float[] x = input;
+		int xOffset = inputOffset;
+		int last = sizes.length - 2;
+
+		for (int l=0; l<=last; l++){
+			float[] y = l == last ? output : workspace.outputs[l];
+			int yOffset = l == last ? outputOffset : 0;
+			forward(l, x, xOffset, y, yOffset, workspace);
+			x = y;
+			xOffset = yOffset;
+		}
+	}
+
+	/**
+	 * Compute the outputs of one layer.
+	 *
+	 * @param l the index of the layer
+	 * @param x the array of the inputs of the layer
+	 * @param xOffset the index of the first input
+	 * @param y the array the outputs of the layer are written to
+	 * @param yOffset the index of the first output
+	 * @param workspace the workspace of the calling thread
+	 */
+	protected void forward(int l, float[] x, int xOffset, float[] y, int yOffset, Workspace workspace){
+
+		float[] w = weights[l];
+		float[] b = biases[l];
+		int inputs = sizes[l];
+		int outputs = sizes[l + 1];
+		int activation = activations[l];
+
+		for (int j=0; j<outputs; j++){
+
+			float sum = b[j];
+			int index = j * inputs;
+			for (int i=0; i<inputs; i++){
+				sum += w[index + i] * x[xOffset + i];
+			}
+			y[yOffset + j] = activate(activation, sum);
+		}
+
+		if (activation == SOFTMAX){
+			softmax(y, yOffset, outputs);
+		}
+	}
+
+	/**
+	 * Apply an activation function to one value. The softmax is applied to the whole layer by {@link #softmax(float[], int, int)}.
+	 *
+	 * @param activation the index of the activation function in {@link #ACTIVATION_NAMES}
+	 * @param value the value before the activation
+	 * @return the value after the activation
+	 */
+	protected static float activate(int activation, float value){
+		switch (activation){
+		case RELU:
+			return value > 0 ? value : 0;
+		case LEAKY_RELU:
+			return value > 0 ? value : LEAKY_RELU_ALPHA * value;
+		case TANH:
+			return (float) Math.tanh(value);
+		case HARD_TANH:
+			return value < -1 ? -1 : (value > 1 ? 1 : value);
+		case SIGMOID:
+			return (float) (1 / (1 + Math.exp(-value)));
+		case SOFTSIGN:
+			return value / (1 + Math.abs(value));
+		case SOFTPLUS:
+			return (float) Math.log1p(Math.exp(value));
+		case SOFTMAX:
+		case IDENTITY:
+		default:
+			return value;
+		}
+	}
+
+	/**
+	 * Apply the softmax to the outputs of a layer in place.
+	 *
+	 * @param y the array of the outputs
+	 * @param offset the index of the first output
+	 * @param length the number of outputs
+	 */
+	protected static void softmax(float[] y, int offset, int length){
+
+		float max = Float.NEGATIVE_INFINITY;
+		for (int j=0; j<length; j++){
+			max = Math.max(max, y[offset + j]);
+		}
+
+		// exp(y - max) / sum, shifted by the largest value against overflow
+		float total = 0;
+		for (int j=0; j<length; j++){
+			float value = (float) Math.exp(y[offset + j] - max);
+			y[offset + j] = value;
+			total += value;
+		}
+		for (int j=0; j<length; j++){
+			y[offset + j] /= total;
+		}
+	}
+}
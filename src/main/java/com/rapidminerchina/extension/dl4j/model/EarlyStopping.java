@@ -0,0 +1,123 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import com.rapidminer.example.ExampleSet;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetConverter;
+
+/**
+ * The early stopping of the training of a network.
+ *
+ * The network is scored on held-out validation examples every given number of epochs,
+ * the training stops once the score has not improved for a given number of evaluations,
+ * and the parameters with the best score seen are kept instead of the last ones.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+class EarlyStopping {
+
+	/**
+	 * The held-out validation examples.
+	 */
+	private final ExampleSet validationSet;
+
+	/**
+	 * The number of epochs between two evaluations.
+	 */
+	private final int frequency;
+
+	/**
+	 * The number of evaluations without improvement after which the training stops.
+	 */
+	private final int patience;
+
+	/**
+	 * The converted validation examples, converted at the first evaluation
+	 * when the normalization of the training examples is known.
+	 */
+	private DataSet validationData = null;
+
+	/**
+	 * The best (lowest) score on the validation examples seen so far.
+	 */
+	private double bestScore = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The parameters of the network with the best score, null before the first evaluation.
+	 */
+	private INDArray bestParameters = null;
+
+	/**
+	 * The number of evaluations since the best score was seen.
+	 */
+	private int evaluationsWithoutImprovement = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param validationSet the held-out validation examples
+	 * @param frequency the number of epochs between two evaluations
+	 * @param patience the number of evaluations without improvement after which the training stops
+	 */
+	EarlyStopping(ExampleSet validationSet, int frequency, int patience){
+		this.validationSet = validationSet;
+		this.frequency = Math.max(frequency, 1);
+		this.patience = patience;
+	}
+
+	/**
+	 * Evaluate the network after an epoch if it is due.
+	 *
+	 * @param network the network being trained
+	 * @param epoch the index of the finished epoch, starting from 0
+	 * @param columnMeans the means used to normalize the features, null if they are not normalized
+	 * @param columnStds the standard deviations used to normalize the features, null if they are not normalized
+	 * @return true if the training should stop
+	 */
+	boolean afterEpoch(MultiLayerNetwork network, int epoch, INDArray columnMeans, INDArray columnStds){
+
+		if ((epoch + 1) % frequency != 0 || validationSet.size() == 0){
+			return false;
+		}
+
+		if (validationData == null){
+			validationData = new ExampleSetConverter(validationSet, true).convert(validationSet);
+			if (columnMeans != null && columnStds != null){
+				ExampleSetConverter.normalize(validationData.getFeatures(), columnMeans, columnStds);
+			}
+		}
+
+		double score = network.score(validationData);
+		if (score < bestScore){
+			bestScore = score;
+			bestParameters = network.params().dup();
+			evaluationsWithoutImprovement = 0;
+			return false;
+		}
+
+		evaluationsWithoutImprovement++;
+		return evaluationsWithoutImprovement >= patience;
+	}
+
+	/**
+	 * Set the parameters with the best score seen back to the network.
+	 *
+	 * @param network the trained network
+	 */
+	void restoreBest(MultiLayerNetwork network){
+		if (bestParameters != null){
+			network.setParameters(bestParameters);
+		}
+	}
+
+	/**
+	 * Retrieve the best score on the validation examples seen so far.
+	 * @return the best score, positive infinity before the first evaluation
+	 */
+	double getBestScore(){
+		return bestScore;
+	}
+}
@@ -0,0 +1,225 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.util.Map;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.nn.layers.convolution.ConvolutionLayer;
+import org.deeplearning4j.nn.layers.convolution.subsampling.SubsamplingLayer;
+import org.deeplearning4j.nn.layers.feedforward.dense.DenseLayer;
+import org.deeplearning4j.nn.layers.feedforward.rbm.RBM;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * The summary of one layer of a trained network, i.e. its type, the shape of its weights,
+ * the number of its parameters and their norm and range.
+ *
+ * The summary is computed with one pass over the parameters of the layer without copying them,
+ * so it is cheap to show even for very wide layers, whose weights are only shown page by page.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class LayerSummary {
+
+	/**
+	 * The index of the layer in the network.
+	 */
+	private final int index;
+
+	/**
+	 * The name of the layer.
+	 */
+	private final String name;
+
+	/**
+	 * The type of the layer.
+	 */
+	private final String type;
+
+	/**
+	 * The shape of the weights, null if the layer has no weights.
+	 */
+	private final int[] shape;
+
+	/**
+	 * The number of all parameters of the layer, i.e. its weights and biases.
+	 */
+	private final int parameterCount;
+
+	/**
+	 * The euclidean norm of all parameters.
+	 */
+	private final double norm;
+
+	/**
+	 * The smallest parameter, NaN if the layer has no parameters.
+	 */
+	private final double min;
+
+	/**
+	 * The largest parameter, NaN if the layer has no parameters.
+	 */
+	private final double max;
+
+	/**
+	 * Summarize a layer.
+	 *
+	 * @param index the index of the layer in the network
+	 * @param name the name of the layer
+	 * @param layer the layer of the network
+	 */
+	public LayerSummary(int index, String name, Layer layer){
+
+		this.index = index;
+		this.name = name;
+		this.type = getTypeName(layer);
+
+		Map<String, INDArray> parameters = layer.paramTable();
+		INDArray weights = parameters == null ? null : parameters.get("W");
+		this.shape = weights == null ? null : weights.shape().clone();
+
+		int count = 0;
+		double sum = 0;
+		double smallest = Double.NaN;
+		double largest = Double.NaN;
+		if (parameters != null){
+			for (INDArray array : parameters.values()){
+				int length = array.length();
+				for (int i=0; i<length; i++){
+					double value = array.getDouble(i);
+					sum += value * value;
+					if (count == 0 || value < smallest){
+						smallest = value;
+					}
+					if (count == 0 || value > largest){
+						largest = value;
+					}
+					count++;
+				}
+			}
+		}
+
+		this.parameterCount = count;
+		this.norm = Math.sqrt(sum);
+		this.min = smallest;
+		this.max = largest;
+	}
+
+	/**
+	 * Retrieve the readable name of the type of a layer.
+	 * @param layer the layer of the network
+	 * @return the name of its type
+	 */
+	public static String getTypeName(Layer layer){
+		if (layer.getClass() == DenseLayer.class){
+			return "Dense Layer";
+		} else if (layer.getClass() == OutputLayer.class){
+			return "Output Layer";
+		} else if (layer.getClass() == RBM.class){
+			return "RBM Layer";
+		} else if (layer.getClass() == SubsamplingLayer.class){
+			return "Subsampling Layer";
+		} else if (layer.getClass() == ConvolutionLayer.class){
+			return "Convolutional Layer";
+		}
+		return layer.getClass().getSimpleName();
+	}
+
+	/**
+	 * Retrieve the index of the layer in the network.
+	 * @return the index
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	/**
+	 * Retrieve the name of the layer.
+	 * @return the name
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Retrieve the type of the layer.
+	 * @return the readable name of the type
+	 */
+	public String getType(){
+		return type;
+	}
+
+	/**
+	 * Retrieve the shape of the weights of the layer.
+	 * @return the shape, null if the layer has no weights
+	 */
+	public int[] getShape(){
+		return shape == null ? null : shape.clone();
+	}
+
+	/**
+	 * Retrieve the shape of the weights as text, e.g. &quot;4096 x 10&quot;.
+	 * @return the shape, an empty text if the layer has no weights
+	 */
+	public String getShapeText(){
+		if (shape == null){
+			return "";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<shape.length; i++){
+			if (i > 0){
+				builder.append(" x ");
+			}
+			builder.append(shape[i]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Retrieve the number of all parameters of the layer.
+	 * @return the number of weights and biases
+	 */
+	public int getParameterCount(){
+		return parameterCount;
+	}
+
+	/**
+	 * Retrieve the euclidean norm of all parameters of the layer.
+	 * @return the norm
+	 */
+	public double getNorm(){
+		return norm;
+	}
+
+	/**
+	 * Retrieve the smallest parameter of the layer.
+	 * @return the minimum, NaN if the layer has no parameters
+	 */
+	public double getMin(){
+		return min;
+	}
+
+	/**
+	 * Retrieve the largest parameter of the layer.
+	 * @return the maximum, NaN if the layer has no parameters
+	 */
+	public double getMax(){
+		return max;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		builder.append("Layer ").append(index).append(": ").append(name).append(" (").append(type).append(")");
+		if (shape != null){
+			builder.append("\n  weights: ").append(getShapeText());
+		}
+		builder.append("\n  parameters: ").append(parameterCount);
+		if (parameterCount > 0){
+			builder.append("\n  norm: ").append(norm);
+			builder.append("\n  range: [").append(min).append(", ").append(max).append("]");
+		}
+		return builder.toString();
+	}
+}
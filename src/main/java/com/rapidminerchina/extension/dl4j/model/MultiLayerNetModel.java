@@ -1,30 +1,52 @@
 package com.rapidminerchina.extension.dl4j.model;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 
 import org.apache.poi.poifs.storage.ListManagedBlock;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.layers.Layer;
-import org.deeplearning4j.nn.layers.OutputLayer;
-import org.deeplearning4j.nn.layers.convolution.ConvolutionLayer;
-import org.deeplearning4j.nn.layers.convolution.subsampling.SubsamplingLayer;
 import org.deeplearning4j.nn.layers.feedforward.dense.DenseLayer;
 import org.deeplearning4j.nn.layers.feedforward.rbm.RBM;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.factory.Nd4j;
 
 import com.rapidminer.example.Attribute;
 import com.rapidminer.example.Attributes;
-import com.rapidminer.example.Example;
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.example.set.ExampleSetUtilities;
+import com.rapidminer.example.set.SplittedExampleSet;
+import com.rapidminer.example.table.DataRow;
 import com.rapidminer.example.table.NominalMapping;
 import com.rapidminer.operator.OperatorException;
+import com.rapidminer.operator.ProcessStoppedException;
 import com.rapidminer.operator.learner.*;
+import com.rapidminer.tools.LogService;
 import com.rapidminerchina.extension.dl4j.DL4JConvert;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetConverter;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetDataSetIterator;
+import com.rapidminerchina.extension.dl4j.data.NormalizingPreProcessor;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+import com.rapidminerchina.extension.dl4j.data.PrefetchDataSetIterator;
+import com.rapidminerchina.extension.dl4j.data.RunningStatistics;
 
 
 
@@ -48,25 +70,50 @@ import com.rapidminerchina.extension.dl4j.DL4JConvert;
  * 
  * Currently:
  * <ul>
- * 	<li>The transfer matrices are not implemented, as they are not used;</li>
- * 	<li>The method clone is not implemented, as they are not used in current implementation.</li>
+ * 	<li>The transfer matrices are not implemented, as they are not used.</li>
  * </ul>
  * 
  * @author Anson Chen
  * @version 0.3.1
  */
-@SuppressWarnings("serial")
 public class MultiLayerNetModel extends PredictionModel{
 	
+	/**
+	 * The serial version of the class as computed for version 0.3.1, so models stored with it can still be read.
+	 */
+	private static final long serialVersionUID = -8453900633508711805L;
+	
+	/**
+	 * The version of the serialized form written by {@link #writeObject(ObjectOutputStream)}.
+	 * Version 0 is the form of version 0.3.1, with the network and its configuration serialized by Java.
+	 */
+	private static final int FORMAT_VERSION = 1;
+	
+	/**
+	 * The version of the serialized form, see {@link #FORMAT_VERSION}.
+	 */
+	private int format = FORMAT_VERSION;
+	
 	/**
 	 * The list of name of each layer.
 	 */
 	private List<String> names;
 	
 	/**
-	 * The multilayer network model.
+	 * The multilayer network model, stored in the compact format of {@link NetworkFormat}.
+	 */
+	private transient MultiLayerNetwork model;
+	
+	/**
+	 * The network of a retrieved model as it was read, until it is built on its first use, null otherwise.
+	 * The configuration, the layer names and the feature and label information are available without building it.
 	 */
-	private MultiLayerNetwork model;
+	private transient NetworkFormat.StoredNetwork stored;
+	
+	/**
+	 * The export of the network into a scorer in plain Java, created on its first use and dropped when the network changes.
+	 */
+	private transient DenseScorer scorer;
 	
 	/**
 	 * The list stores feature names.
@@ -82,11 +129,123 @@ public class MultiLayerNetModel extends PredictionModel{
 	 * The standard deviation of features of the training data, typically used for normalization.
 	 */
 	private INDArray columnStds = null;
+	
+	/**
+	 * The running statistics of the features of all examples seen in training and updates,
+	 * null if the features are not normalized with statistics of their own.
+	 */
+	private RunningStatistics statistics = null;
 
 	/**
 	 * The configuration information of the mutilayer network model.
 	 */
-	private MultiLayerConfiguration configuration;
+	private transient MultiLayerConfiguration configuration;
+	
+	/**
+	 * The number of examples in each mini-batch during training,
+	 * 0 or a number not less than the size of the training exampleset means the whole exampleset as one batch.
+	 */
+	private int batchSize = 0;
+	
+	/**
+	 * The number of passes over the training exampleset.
+	 */
+	private int epochs = 1;
+	
+	/**
+	 * The number of mini-batches converted on worker threads ahead of the training, 0 to convert them on demand.
+	 */
+	private int prefetchBatches = 0;
+	
+	/**
+	 * The number of network replicas trained concurrently on disjoint mini-batches, 1 to train on the calling thread.
+	 */
+	private int trainingWorkers = 1;
+	
+	/**
+	 * The number of mini-batches each replica trains before the parameters of the replicas are averaged.
+	 */
+	private int averagingFrequency = 1;
+	
+	/**
+	 * The fraction of the training examples held out to decide when to stop the training, 0 to train all epochs.
+	 */
+	private double validationFraction = 0;
+	
+	/**
+	 * The number of epochs between two evaluations on the validation examples.
+	 */
+	private int evaluationFrequency = 1;
+	
+	/**
+	 * The number of evaluations without improvement after which the training stops.
+	 */
+	private int patience = 5;
+	
+	/**
+	 * The directory where checkpoints are written during training, null to not write checkpoints.
+	 */
+	private File checkpointDirectory = null;
+	
+	/**
+	 * The number of epochs between two checkpoints.
+	 */
+	private int checkpointFrequency = 1;
+	
+	/**
+	 * Whether to continue the training from the latest checkpoint in the checkpoint directory.
+	 */
+	private boolean resumeFromCheckpoint = false;
+	
+	/**
+	 * The checkpoints of the current training, null if no training is running or no checkpoints are written.
+	 */
+	private transient Checkpoints checkpoints = null;
+	
+	/**
+	 * The index of the first epoch of the current training, larger than 0 if the training is resumed.
+	 */
+	private transient int firstEpoch = 0;
+	
+	/**
+	 * The model whose parameters and normalization statistics the next training starts from, null to start from scratch.
+	 */
+	private transient MultiLayerNetModel warmStart = null;
+	
+	/**
+	 * Whether the current training keeps the normalization statistics of the warm start model instead of computing them.
+	 */
+	private transient boolean keepStatistics = false;
+	
+	/**
+	 * The number of examples converted and scored at once during prediction, 0 to score the whole exampleset at once.
+	 */
+	private int scoringBatchSize = 0;
+	
+	/**
+	 * The number of threads scoring the examples during prediction, 1 to score them on the calling thread.
+	 */
+	private int scoringThreads = 1;
+	
+	/**
+	 * Whether to fold the normalization into the first layer after training.
+	 */
+	private boolean foldNormalization = false;
+	
+	/**
+	 * The number of the highest confidences written for each example during prediction, 0 to write all confidences.
+	 */
+	private int topConfidences = 0;
+	
+	/**
+	 * Whether to score the examples with the plain Java {@link DenseScorer} instead of ND4J during prediction.
+	 */
+	private boolean javaScoring = false;
+	
+	/**
+	 * The data type of the arrays the network is trained and scored with, null for double precision.
+	 */
+	private DataBuffer.Type precision = null;
 	
 	/*
 	 * The transfer matrices (weights and bias) represented in 2d-arrays.
@@ -150,11 +309,39 @@ public class MultiLayerNetModel extends PredictionModel{
     	return getLabelMapping().getValues();
     }
     
+    /**
+     * Retrieve the names of the layers, available without building the network of a retrieved model.
+     * @return a list of the layer names
+     */
+    public List<String> getLayerNames(){
+    	return names;
+    }
+
     /**
      * Retrieve the trained multilayer network model.
+     * The network of a retrieved model is built with the first call.
      * @return the multilayer network model
      */
     public MultiLayerNetwork getModel(){
+    	return materialize();
+    }
+    
+    /**
+     * Build the network of a retrieved model, if it has not been built yet.
+     * All scoring and inspection of the network takes the network returned here.
+     * @return the network, null if the model has not been trained
+     */
+    protected synchronized MultiLayerNetwork materialize(){
+    	if (stored != null){
+    		Precision.enterUninterruptibly(precision);
+    		try {
+    			model = stored.build();
+    		} finally {
+    			Precision.leave();
+    		}
+    		configuration = model.getLayerWiseConfigurations();
+    		stored = null;
+    	}
     	return model;
     }
     
@@ -198,6 +385,8 @@ public class MultiLayerNetModel extends PredictionModel{
      */
     public void setMultiLayerNetwork(MultiLayerNetwork model){
     	this.model = model;
+    	this.stored = null;
+    	this.scorer = null;
     	this.configuration = model.getLayerWiseConfigurations();
     }
     
@@ -209,101 +398,1280 @@ public class MultiLayerNetModel extends PredictionModel{
     	this.configuration = configuration;
     }
     
+    /**
+     * Specify a network trained outside of this model, e.g. the best network of a parameter search,
+     * together with the statistics its input was normalized with.
+     * @param network the trained network
+     * @param layerNames the names of the layers of the network
+     * @param statistics the statistics of the features the network was trained on, null if they were not normalized
+     */
+    public void setTrainedNetwork(MultiLayerNetwork network, List<String> layerNames, RunningStatistics statistics){
+    	setMultiLayerNetwork(network);
+    	this.names = layerNames;
+    	this.statistics = statistics;
+    	if (statistics != null){
+    		this.columnMeans = statistics.getMeans();
+    		this.columnStds = statistics.getStandardDeviations(Nd4j.EPS_THRESHOLD);
+    	} else {
+    		this.columnMeans = Nd4j.zeros(featureNames.size());
+    		this.columnStds = Nd4j.ones(featureNames.size());
+    	}
+    	this.warmStart = null;
+    }
+    
+    /**
+     * Specify the number of examples in each mini-batch during training.
+     * @param batchSize the batch size, 0 for the whole exampleset as one batch
+     */
+    public void setBatchSize(int batchSize){
+    	this.batchSize = batchSize;
+    }
+    
+    /**
+     * Retrieve the number of examples in each mini-batch during training.
+     * @return the batch size, 0 for the whole exampleset as one batch
+     */
+    public int getBatchSize(){
+    	return batchSize;
+    }
+    
+    /**
+     * Specify the number of passes over the training exampleset.
+     * @param epochs the number of epochs
+     */
+    public void setEpochs(int epochs){
+    	this.epochs = epochs;
+    }
+    
+    /**
+     * Retrieve the number of passes over the training exampleset.
+     * @return the number of epochs
+     */
+    public int getEpochs(){
+    	return epochs;
+    }
+    
+    /**
+     * Specify the number of mini-batches converted on worker threads ahead of the training.
+     * @param prefetchBatches the number of prefetched mini-batches, 0 to convert them on demand
+     */
+    public void setPrefetchBatches(int prefetchBatches){
+    	this.prefetchBatches = prefetchBatches;
+    }
+    
+    /**
+     * Retrieve the number of mini-batches converted on worker threads ahead of the training.
+     * @return the number of prefetched mini-batches, 0 if they are converted on demand
+     */
+    public int getPrefetchBatches(){
+    	return prefetchBatches;
+    }
+    
+    /**
+     * Specify the number of network replicas trained concurrently on disjoint mini-batches.
+     * @param trainingWorkers the number of replicas, 1 to train on the calling thread
+     */
+    public void setTrainingWorkers(int trainingWorkers){
+    	this.trainingWorkers = trainingWorkers;
+    }
+    
+    /**
+     * Retrieve the number of network replicas trained concurrently on disjoint mini-batches.
+     * @return the number of replicas, 1 if the network is trained on the calling thread
+     */
+    public int getTrainingWorkers(){
+    	return trainingWorkers;
+    }
+    
+    /**
+     * Specify the number of mini-batches each replica trains before the parameters of the replicas are averaged.
+     * @param averagingFrequency the number of mini-batches
+     */
+    public void setAveragingFrequency(int averagingFrequency){
+    	this.averagingFrequency = averagingFrequency;
+    }
+    
+    /**
+     * Retrieve the number of mini-batches each replica trains before the parameters of the replicas are averaged.
+     * @return the number of mini-batches
+     */
+    public int getAveragingFrequency(){
+    	return averagingFrequency;
+    }
+    
+    /**
+     * Specify the fraction of the training examples held out to decide when to stop the training.
+     * @param validationFraction the fraction of the examples, 0 to train all epochs without early stopping
+     */
+    public void setValidationFraction(double validationFraction){
+    	this.validationFraction = validationFraction;
+    }
+    
+    /**
+     * Retrieve the fraction of the training examples held out to decide when to stop the training.
+     * @return the fraction of the examples, 0 if early stopping is not used
+     */
+    public double getValidationFraction(){
+    	return validationFraction;
+    }
+    
+    /**
+     * Specify the number of epochs between two evaluations on the validation examples.
+     * @param evaluationFrequency the number of epochs
+     */
+    public void setEvaluationFrequency(int evaluationFrequency){
+    	this.evaluationFrequency = evaluationFrequency;
+    }
+    
+    /**
+     * Retrieve the number of epochs between two evaluations on the validation examples.
+     * @return the number of epochs
+     */
+    public int getEvaluationFrequency(){
+    	return evaluationFrequency;
+    }
+    
+    /**
+     * Specify the number of evaluations without improvement after which the training stops.
+     * @param patience the number of evaluations
+     */
+    public void setPatience(int patience){
+    	this.patience = patience;
+    }
+    
+    /**
+     * Retrieve the number of evaluations without improvement after which the training stops.
+     * @return the number of evaluations
+     */
+    public int getPatience(){
+    	return patience;
+    }
+    
+    /**
+     * Specify the directory where checkpoints are written during training.
+     * @param checkpointDirectory the directory, null to not write checkpoints
+     */
+    public void setCheckpointDirectory(File checkpointDirectory){
+    	this.checkpointDirectory = checkpointDirectory;
+    }
+    
+    /**
+     * Retrieve the directory where checkpoints are written during training.
+     * @return the directory, null if no checkpoints are written
+     */
+    public File getCheckpointDirectory(){
+    	return checkpointDirectory;
+    }
+    
+    /**
+     * Specify the number of epochs between two checkpoints.
+     * @param checkpointFrequency the number of epochs
+     */
+    public void setCheckpointFrequency(int checkpointFrequency){
+    	this.checkpointFrequency = checkpointFrequency;
+    }
+    
+    /**
+     * Retrieve the number of epochs between two checkpoints.
+     * @return the number of epochs
+     */
+    public int getCheckpointFrequency(){
+    	return checkpointFrequency;
+    }
+    
+    /**
+     * Specify whether to continue the training from the latest checkpoint in the checkpoint directory.
+     * @param resumeFromCheckpoint true to resume the training
+     */
+    public void setResumeFromCheckpoint(boolean resumeFromCheckpoint){
+    	this.resumeFromCheckpoint = resumeFromCheckpoint;
+    }
+    
+    /**
+     * Retrieve whether the training continues from the latest checkpoint in the checkpoint directory.
+     * @return true if the training is resumed
+     */
+    public boolean getResumeFromCheckpoint(){
+    	return resumeFromCheckpoint;
+    }
+    
+    /**
+     * Specify a trained model to continue the training from, instead of starting with random parameters.
+     * The model is only used by the next training.
+     * @param warmStart the trained model, null to start from scratch
+     */
+    public void setWarmStart(MultiLayerNetModel warmStart){
+    	this.warmStart = warmStart;
+    }
+    
+    /**
+     * Specify the number of examples converted and scored at once during prediction.
+     * @param scoringBatchSize the number of examples, 0 to score the whole exampleset at once
+     */
+    public void setScoringBatchSize(int scoringBatchSize){
+    	this.scoringBatchSize = scoringBatchSize;
+    }
+    
+    /**
+     * Retrieve the number of examples converted and scored at once during prediction.
+     * @return the number of examples, 0 if the whole exampleset is scored at once
+     */
+    public int getScoringBatchSize(){
+    	return scoringBatchSize;
+    }
+    
+    /**
+     * Specify the number of threads scoring the examples during prediction.
+     * @param scoringThreads the number of threads, 1 to score on the calling thread
+     */
+    public void setScoringThreads(int scoringThreads){
+    	this.scoringThreads = scoringThreads;
+    }
+    
+    /**
+     * Retrieve the number of threads scoring the examples during prediction.
+     * @return the number of threads, 1 if the examples are scored on the calling thread
+     */
+    public int getScoringThreads(){
+    	return scoringThreads;
+    }
+    
+    /**
+     * Specify whether to fold the normalization into the weights and bias of the first layer after training.
+     * @param foldNormalization true to fold the normalization
+     */
+    public void setFoldNormalization(boolean foldNormalization){
+    	this.foldNormalization = foldNormalization;
+    }
+    
+    /**
+     * Retrieve whether the normalization is folded into the first layer after training.
+     * @return true if the normalization is folded
+     */
+    public boolean getFoldNormalization(){
+    	return foldNormalization;
+    }
+    
+    /**
+     * Specify the number of the highest confidences written for each example during prediction.
+     * @param topConfidences the number of confidences, 0 to write all confidences
+     */
+    public void setTopConfidences(int topConfidences){
+    	this.topConfidences = topConfidences;
+    }
+    
+    /**
+     * Retrieve the number of the highest confidences written for each example during prediction.
+     * @return the number of confidences, 0 if all confidences are written
+     */
+    public int getTopConfidences(){
+    	return topConfidences;
+    }
+    
+    /**
+     * Specify whether to score the examples with the plain Java {@link DenseScorer} instead of ND4J during prediction.
+     * Networks the scorer does not support are scored with ND4J.
+     * @param javaScoring true to score in plain Java
+     */
+    public void setJavaScoring(boolean javaScoring){
+    	this.javaScoring = javaScoring;
+    }
+    
+    /**
+     * Retrieve whether the examples are scored with the plain Java {@link DenseScorer} during prediction.
+     * @return true if the examples are scored in plain Java
+     */
+    public boolean isJavaScoring(){
+    	return javaScoring;
+    }
+    
+    /**
+     * Export the trained network into a scorer in plain Java, with the normalization of the features folded in.
+     * The scorer is created with the first call and kept until the network changes.
+     * @return the scorer
+     * @throws OperatorException if the model has not been trained or the network cannot be scored in plain Java
+     */
+    public synchronized DenseScorer getDenseScorer() throws OperatorException{
+    	if (scorer == null){
+    		MultiLayerNetwork network = materialize();
+    		if (network == null){
+    			throw new OperatorException("The model has not been trained.");
+    		}
+    		scorer = isNormalizingInput()
+    				? DenseScorer.create(network, columnMeans, columnStds)
+    				: DenseScorer.create(network, null, null);
+    	}
+    	return scorer;
+    }
+    
+    /**
+     * Specify the precision of the arrays the network is trained and scored with.
+     * Takes effect with the next training, a trained network keeps the precision it was trained with.
+     * @param precision the data type, null for double precision
+     */
+    public void setPrecision(DataBuffer.Type precision){
+    	if (model == null && stored == null){
+    		this.precision = precision;
+    	}
+    }
+    
+    /**
+     * Retrieve the precision of the arrays the network is trained and scored with.
+     * @return the data type, null for double precision
+     */
+    public DataBuffer.Type getPrecision(){
+    	return precision;
+    }
+    
+    /**
+     * Retrieve the means the features are normalized with before they are passed to the network.
+     * @return the means, null if the features are not normalized
+     */
+    public INDArray getColumnMeans(){
+    	return columnMeans;
+    }
+    
+    /**
+     * Retrieve the standard deviations the features are normalized with before they are passed to the network.
+     * @return the standard deviations, null if the features are not normalized
+     */
+    public INDArray getColumnStds(){
+    	return columnStds;
+    }
+    
+    /**
+     * Retrieve whether the features are normalized before they are passed to the network during prediction.
+     * This is not the case if the normalization has been folded into the first layer.
+     * @return true if the features are normalized during prediction
+     */
+    public boolean isNormalizingInput(){
+    	return columnMeans != null && columnStds != null;
+    }
+    
     /**
      * Perform prediction and write the results to a specified attribute name.
+     * 
+     * The examples are scored chunk by chunk, each chunk is converted, normalized, scored
+     * and written back before the next one starts, so the memory used does not grow with the size of the exampleset.
+     * 
+     * If more than one scoring thread is specified, the chunks are scored concurrently on a fork-join pool,
+     * each thread working with its own replica of the network.
+     * 
+     * If a number of top confidences is specified, only the highest confidences of each example are written,
+     * the other confidences keep the initial value of the confidence attributes.
+     * 
+     * For a numerical label, the single output column is written as the prediction without any confidences.
+     * 
+     * The examples are converted and scored in the precision the network was trained with.
      */
 	@Override
 	public ExampleSet performPrediction(ExampleSet exampleSet, Attribute predictedLabel) throws OperatorException {
 		
-		if (exampleSet.getAttributes().getPredictedLabel() != predictedLabel){
-			exampleSet.getAttributes().setPredictedLabel(predictedLabel);
-		}
-		
-		// construct the table of features
-		int feature_num = featureNames.size();
-		int row_num = exampleSet.size();
-		double[][] featuresMatrix = new double[row_num][feature_num];
-		
-		int counter = 0;
-		for (Example e : exampleSet){
-			for (int i=0; i<feature_num; i++){
-				double d = e.getValue(exampleSet.getAttributes().get(featureNames.get(i)));
-				featuresMatrix[counter][i] = d;
+		if (isJavaScoring()){
+			DenseScorer dense = null;
+			try {
+				dense = getDenseScorer();
+			} catch (OperatorException e) {
+				LogService.getRoot().log(Level.WARNING, e.getMessage() + " The examples are scored with ND4J.");
+			}
+			if (dense != null){
+				return predict(exampleSet, predictedLabel, dense, null);
 			}
-			counter++;
 		}
 		
-		// build the 2d-array of the features
-		INDArray features = org.nd4j.linalg.factory.Nd4j.create(featuresMatrix);
+		MultiLayerNetwork network = materialize();
+		Precision.enter(precision);
+		try {
+			return predict(exampleSet, predictedLabel, null, network);
+		} finally {
+			Precision.leave();
+		}
+	}
+	
+	/**
+	 * Perform prediction with the network in its precision, or with the plain Java scorer if one is given.
+	 */
+	private ExampleSet predict(ExampleSet exampleSet, Attribute predictedLabel, DenseScorer dense, MultiLayerNetwork network)
+			throws OperatorException {
+		
+		if (exampleSet.getAttributes().getPredictedLabel() != predictedLabel){
+			exampleSet.getAttributes().setPredictedLabel(predictedLabel);
+		}
+		
+		// the attributes are resolved only once for all chunks
+		ExampleSetConverter converter = new ExampleSetConverter(
+				ExampleSetConverter.resolveAttributes(exampleSet, featureNames), null);
+		
+		// the confidence attributes are also resolved once, in the order of the label indices
+		Attribute[] confidences = null;
+		if (getLabel().isNominal()){
+			NominalMapping mapping = getLabelMapping();
+			confidences = new Attribute[mapping.size()];
+			for (int i=0; i<confidences.length; i++){
+				confidences[i] = exampleSet.getAttributes().getConfidence(mapping.mapIndex(i));
+			}
+		}
+		
+		// the data rows are resolved once, so a view on a table is walked through only once
+		DataRow[] rows = ExampleSetConverter.resolveRows(exampleSet);
+		
+		int size = rows.length;
+		int step = scoringBatchSize > 0 ? scoringBatchSize : size;
+		
+		if (scoringThreads > 1 && size > 1){
+			// make sure each thread gets at least one chunk
+			step = Math.min(step, (size + scoringThreads - 1) / scoringThreads);
+			predictInParallel(rows, converter, predictedLabel, confidences, step, dense, network);
+		} else if (dense != null){
+			DenseScorer.Workspace workspace = dense.createWorkspace();
+			for (int from=0; from<size; from+=step){
+				predict(dense, workspace, rows, converter, predictedLabel, confidences, from, Math.min(from + step, size));
+			}
+		} else {
+			for (int from=0; from<size; from+=step){
+				predict(network, rows, converter, predictedLabel, confidences, from, Math.min(from + step, size));
+			}
+		}
+		
+		return exampleSet;
+	}
+	
+	/**
+	 * Score the examples chunk by chunk on a fork-join pool.
+	 * Each chunk writes to its own range of examples, thus the results need no further synchronization.
+	 * 
+	 * @param rows the data rows of the examples to score
+	 * @param converter the converter of the features
+	 * @param predictedLabel the predicted label attribute
+	 * @param confidences the confidence attributes in the order of the label indices, null for a numerical label
+	 * @param step the number of examples in each chunk
+	 * @param dense the plain Java scorer, null to score with ND4J
+	 * @param network the network scored with ND4J if no plain Java scorer is given
+	 */
+	private void predictInParallel(DataRow[] rows, ExampleSetConverter converter, Attribute predictedLabel, 
+			Attribute[] confidences, int step, final DenseScorer dense, final MultiLayerNetwork network){
+		
+		ThreadLocal<MultiLayerNetwork> replicas = null;
+		ThreadLocal<DenseScorer.Workspace> workspaces = null;
+		if (dense != null){
+			// the plain Java scorer only needs the arrays of its own workspace per thread
+			workspaces = new ThreadLocal<DenseScorer.Workspace>(){
+				
+				@Override
+				protected DenseScorer.Workspace initialValue() {
+					return dense.createWorkspace();
+				}
+			};
+		} else {
+			// the layers of DL4J keep their inputs, thus every thread needs its own replica
+			replicas = new ThreadLocal<MultiLayerNetwork>(){
+				
+				@Override
+				protected MultiLayerNetwork initialValue() {
+					return createReplica(network);
+				}
+			};
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(scoringThreads);
+		try {
+			pool.invoke(new ScoringTask(rows, converter, predictedLabel, confidences, replicas, dense, workspaces,
+					0, rows.length, step));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Create a network with the same configuration as the trained network,
+	 * whose layers share the parameters of the trained network instead of copying them.
+	 * The parameters are only read during scoring, so they can be shared among threads.
+	 * 
+	 * @param network the trained network
+	 * @return the replica of the trained network
+	 */
+	private MultiLayerNetwork createReplica(MultiLayerNetwork network){
+		
+		MultiLayerNetwork replica = new MultiLayerNetwork(network.getLayerWiseConfigurations().clone());
+		replica.init();
+		
+		for (int i=0; i<network.getnLayers(); i++){
+			replica.getLayer(i).setParamTable(network.getLayer(i).paramTable());
+		}
+		
+		return replica;
+	}
+	
+	/**
+	 * The task scoring a range of examples, 
+	 * which is split in halves along the chunk boundaries until only one chunk is left.
+	 */
+	@SuppressWarnings("serial")
+	private class ScoringTask extends RecursiveAction {
+		
+		private final DataRow[] rows;
+		
+		private final ExampleSetConverter converter;
+		
+		private final Attribute predictedLabel;
+		
+		private final Attribute[] confidences;
+		
+		private final ThreadLocal<MultiLayerNetwork> replicas;
+		
+		private final DenseScorer dense;
+		
+		private final ThreadLocal<DenseScorer.Workspace> workspaces;
+		
+		private final int from;
+		
+		private final int to;
+		
+		private final int step;
+		
+		ScoringTask(DataRow[] rows, ExampleSetConverter converter, Attribute predictedLabel, Attribute[] confidences,
+				ThreadLocal<MultiLayerNetwork> replicas, DenseScorer dense, ThreadLocal<DenseScorer.Workspace> workspaces,
+				int from, int to, int step){
+			this.rows = rows;
+			this.converter = converter;
+			this.predictedLabel = predictedLabel;
+			this.confidences = confidences;
+			this.replicas = replicas;
+			this.dense = dense;
+			this.workspaces = workspaces;
+			this.from = from;
+			this.to = to;
+			this.step = step;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			if (to - from <= step){
+				if (dense != null){
+					predict(dense, workspaces.get(), rows, converter, predictedLabel, confidences, from, to);
+				} else {
+					predict(replicas.get(), rows, converter, predictedLabel, confidences, from, to);
+				}
+				return;
+			}
+			
+			int chunks = (to - from + step - 1) / step;
+			int middle = from + (chunks / 2) * step;
+			
+			invokeAll(new ScoringTask(rows, converter, predictedLabel, confidences, replicas, dense, workspaces, from, middle, step),
+					new ScoringTask(rows, converter, predictedLabel, confidences, replicas, dense, workspaces, middle, to, step));
+		}
+	}
+	
+	/**
+	 * Score a range of examples and write the results to the predicted label and the confidences.
+	 * 
+	 * @param network the network used for scoring
+	 * @param rows the data rows of the examples to score
+	 * @param converter the converter of the features
+	 * @param predictedLabel the predicted label attribute
+	 * @param confidences the confidence attributes in the order of the label indices, null for a numerical label
+	 * @param from the index of the first example to score
+	 * @param to the index after the last example to score
+	 */
+	private void predict(MultiLayerNetwork network, DataRow[] rows, ExampleSetConverter converter,
+			Attribute predictedLabel, Attribute[] confidences, int from, int to){
+		
+		// build the 2d-array of the features
+		INDArray features = converter.convertFeatures(rows, null, from, to);
 		
 		// normalize features in the same way that the training data is normalized.
 		if (this.columnMeans != null && this.columnStds != null){
-			features = features.subiRowVector(columnMeans);
-			features = features.diviRowVector(columnStds);
+			ExampleSetConverter.normalize(features, columnMeans, columnStds);
 		}
 		
 		// make prediction
-		INDArray output = model.output(features);
+		INDArray output = network.output(features);
+		
+		if (confidences == null){
+			writeRegression(output, rows, predictedLabel, from, to);
+			return;
+		}
+		
+		if (topConfidences > 0 && topConfidences < confidences.length){
+			writeTopConfidences(output, rows, predictedLabel, confidences, from, to);
+			return;
+		}
 		
 		/*
 		 * convert the output 2d-array to the specified attribute in the exampleset,
 		 * together with the confidences on each label
 		 */
 		int[] indices = DL4JConvert.getMax(output);
-		NominalMapping mapping = getLabelMapping();
-		int numLabel = mapping.getValues().size();
+		DataBuffer buffer = output.data();
+		int offset = output.offset();
+		int rowStride = output.stride(0);
+		int columnStride = output.stride(1);
 		
-		counter = 0;
-		for (Example e : exampleSet){
+		for (int counter=0; counter<to-from; counter++){
 			
-			e.setPredictedLabel(indices[counter]);
+			DataRow row = rows[from + counter];
+			predictedLabel.setValue(row, indices[counter]);
 			
-			for (int i=0; i<numLabel; i++){
-				e.setConfidence(mapping.mapIndex(i), output.getRow(counter).getDouble(i));
+			int index = offset + counter * rowStride;
+			for (int i=0; i<confidences.length; i++){
+				confidences[i].setValue(row, buffer.getDouble(index));
+				index += columnStride;
 			}
-			counter++;
 		}
+	}
+	
+	/**
+	 * Write the single output column as the prediction of each example.
+	 */
+	private void writeRegression(INDArray output, DataRow[] rows, Attribute predictedLabel, int from, int to){
 		
-		return exampleSet;
+		DataBuffer buffer = output.data();
+		int index = output.offset();
+		int rowStride = output.stride(0);
+		
+		for (int counter=0; counter<to-from; counter++){
+			predictedLabel.setValue(rows[from + counter], buffer.getDouble(index));
+			index += rowStride;
+		}
+	}
+	
+	/**
+	 * Write the predicted label and only the highest confidences of each example.
+	 * The highest confidences of a row are selected in one pass by insertion into a sorted array of the top values,
+	 * the first of which is the predicted label.
+	 */
+	private void writeTopConfidences(INDArray output, DataRow[] rows, Attribute predictedLabel, Attribute[] confidences,
+			int from, int to){
+		
+		DataBuffer buffer = output.data();
+		int offset = output.offset();
+		int rowStride = output.stride(0);
+		int columnStride = output.stride(1);
+		
+		int[] topIndices = new int[topConfidences];
+		double[] topValues = new double[topConfidences];
+		
+		for (int counter=0; counter<to-from; counter++){
+			
+			int count = 0;
+			int index = offset + counter * rowStride;
+			
+			for (int i=0; i<confidences.length; i++){
+				
+				count = insertTop(buffer.getDouble(index), i, count, topIndices, topValues);
+				index += columnStride;
+			}
+			
+			DataRow row = rows[from + counter];
+			predictedLabel.setValue(row, topIndices[0]);
+			
+			for (int j=0; j<count; j++){
+				confidences[topIndices[j]].setValue(row, topValues[j]);
+			}
+		}
+	}
+	
+	/**
+	 * Insert a confidence into the sorted array of the highest confidences of an example, if it is high enough.
+	 * 
+	 * @param value the confidence
+	 * @param label the index of the label value
+	 * @param count the number of confidences in the array
+	 * @param topIndices the label indices of the highest confidences, as many as confidences are kept
+	 * @param topValues the highest confidences, in descending order
+	 * @return the number of confidences in the array after the insertion
+	 */
+	static int insertTop(double value, int label, int count, int[] topIndices, double[] topValues){
+		
+		int k = topIndices.length;
+		if (count < k || value > topValues[count - 1]){
+			
+			// on equal values the lower index stays ahead, as in DL4JConvert.getMax
+			int j = count < k ? count++ : count - 1;
+			while (j > 0 && topValues[j - 1] < value){
+				topIndices[j] = topIndices[j - 1];
+				topValues[j] = topValues[j - 1];
+				j--;
+			}
+			topIndices[j] = label;
+			topValues[j] = value;
+		}
+		return count;
+	}
+	
+	/**
+	 * Score a range of examples with the plain Java scorer and write the results
+	 * to the predicted label and the confidences, in the same way as the scoring with ND4J.
+	 * 
+	 * @param dense the plain Java scorer
+	 * @param workspace the workspace of the calling thread
+	 * @param rows the data rows of the examples to score
+	 * @param converter the converter of the features
+	 * @param predictedLabel the predicted label attribute
+	 * @param confidences the confidence attributes in the order of the label indices, null for a numerical label
+	 * @param from the index of the first example to score
+	 * @param to the index after the last example to score
+	 */
+	private void predict(DenseScorer dense, DenseScorer.Workspace workspace, DataRow[] rows, ExampleSetConverter converter,
+			Attribute predictedLabel, Attribute[] confidences, int from, int to){
+		
+		float[] input = new float[dense.getNumInputs()];
+		float[] output = new float[dense.getNumOutputs()];
+		boolean top = confidences != null && topConfidences > 0 && topConfidences < confidences.length;
+		int[] topIndices = top ? new int[topConfidences] : null;
+		double[] topValues = top ? new double[topConfidences] : null;
+		
+		for (int r=from; r<to; r++){
+			
+			DataRow row = rows[r];
+			converter.readFeatures(row, input);
+			dense.score(input, output, workspace);
+			
+			if (confidences == null){
+				predictedLabel.setValue(row, output[0]);
+				
+			} else if (top){
+				int count = 0;
+				for (int i=0; i<output.length; i++){
+					count = insertTop(output[i], i, count, topIndices, topValues);
+				}
+				predictedLabel.setValue(row, topIndices[0]);
+				for (int j=0; j<count; j++){
+					confidences[topIndices[j]].setValue(row, topValues[j]);
+				}
+				
+			} else {
+				int best = 0;
+				for (int i=0; i<output.length; i++){
+					if (output[i] > output[best]){
+						best = i;
+					}
+					confidences[i].setValue(row, output[i]);
+				}
+				predictedLabel.setValue(row, best);
+			}
+		}
 	}
 	
 	/**
 	 * Train the data.
 	 * 
+	 * If the batch size is smaller than the size of the exampleset, 
+	 * the examples are converted into mini-batches on demand and the network is trained epoch by epoch over them,
+	 * otherwise the whole exampleset is converted and trained as one batch.
+	 * 
+	 * If a validation fraction is specified, these examples are held out of the training,
+	 * the training stops early once the score on them stops improving, and the best parameters are kept.
+	 * 
+	 * If a warm start model is specified, the training continues from its parameters 
+	 * and keeps its normalization statistics.
+	 * 
+	 * If a checkpoint directory is specified, the parameters and the updater state are written there
+	 * in the background every given number of epochs, and the training can be resumed from the latest checkpoint.
+	 * The checkpoint is deleted when the training finishes, so only an interrupted training is resumed.
+	 * 
+	 * The network, the converted examples and the normalization statistics are created in the precision of this model.
+	 * The network of the warm start model is built in its own precision before, and its parameters are copied.
+	 * 
 	 * @param exampleSet the training exampleset
-	 * @param shuffle whether to shuffle the examples;
-	 *        I may not include this boolean in later version as RM has its own shuffle method in split operator
+	 * @param shuffle whether to visit the examples in a new random order in every epoch,
+	 *        only takes effect when the examples are trained in mini-batches
 	 * @param normalization whether to normalize each column
+	 * @throws OperatorException if the warm start model or the checkpoint to resume from does not fit the network,
+	 *         or the calling thread is in another precision
+	 */
+	public void train(ExampleSet exampleSet, boolean shuffle, boolean normalization) throws OperatorException{
+		
+		if (!Precision.canEnter(precision)){
+			warmStart = null;
+			throw new OperatorException("The network cannot be trained in " + (precision == null ? DataBuffer.Type.DOUBLE : precision)
+					+ " precision within an operation in another precision.");
+		}
+		
+		// the network of a retrieved warm start model is built in its own precision, which is entered and left here
+		MultiLayerNetwork initial = warmStart == null ? null : warmStart.getModel();
+		
+		try {
+			Precision.enter(precision);
+		} catch (ProcessStoppedException e) {
+			warmStart = null;
+			throw e;
+		}
+		
+		this.checkpoints = checkpointDirectory == null ? null : new Checkpoints(checkpointDirectory);
+		try {
+			this.stored = null;
+			this.scorer = null;
+			this.model = new MultiLayerNetwork(configuration);
+			model.init();
+			
+			this.firstEpoch = 0;
+			this.keepStatistics = false;
+			this.statistics = null;
+			
+			if (warmStart != null){
+				startFrom(warmStart, initial);
+			}
+			if (checkpoints != null && resumeFromCheckpoint){
+				resume();
+			}
+			fit(exampleSet, shuffle, normalization);
+			
+			// the training has finished, so the next training must not resume from its last checkpoint
+			if (checkpoints != null){
+				checkpoints.delete();
+			}
+		} finally {
+			if (checkpoints != null){
+				checkpoints.close();
+				checkpoints = null;
+			}
+			warmStart = null;
+			Precision.leave();
+		}
+	}
+	
+	/**
+	 * Take over the parameters and the normalization statistics of a trained model.
+	 * 
+	 * @param initial the trained model
+	 * @param network the network of the trained model, built before the precision of this model was entered
+	 */
+	private void startFrom(MultiLayerNetModel initial, MultiLayerNetwork network) throws OperatorException{
+		
+		if (network == null){
+			throw new OperatorException("The initial model has not been trained.");
+		}
+		
+		if (!initial.getFeaturName().equals(featureNames)){
+			throw new OperatorException("The initial model was trained on other attributes than the training examples.");
+		}
+		
+		if (initial.getLabel().isNominal() != getLabel().isNominal() 
+				|| getLabel().isNominal() && !initial.getLabelName().equals(getLabelName())){
+			throw new OperatorException("The initial model was trained on other label values than the training examples.");
+		}
+		
+		INDArray parameters = network.params();
+		if (parameters.length() != model.numParams()){
+			throw new OperatorException("The initial model does not fit the network, it has " + parameters.length()
+					+ " parameters instead of " + model.numParams() + ".");
+		}
+		
+		// the initial model may have been trained in another precision
+		model.setParameters(Precision.copy(parameters));
+		
+		// an initial model whose normalization is folded into the first layer expects the features as they are
+		if (initial.isNormalizingInput()){
+			this.columnMeans = Precision.copy(initial.columnMeans);
+			this.columnStds = Precision.copy(initial.columnStds);
+			this.statistics = initial.statistics == null ? null : new RunningStatistics(initial.statistics);
+		} else {
+			this.columnMeans = Nd4j.zeros(featureNames.size());
+			this.columnStds = Nd4j.ones(featureNames.size());
+		}
+		this.keepStatistics = true;
+	}
+	
+	/**
+	 * Continue from the latest checkpoint, if there is one.
 	 */
-	public void train(ExampleSet exampleSet, boolean shuffle, boolean normalization){
+	private void resume() throws OperatorException{
+		
+		Checkpoints.Checkpoint checkpoint;
+		try {
+			checkpoint = checkpoints.load();
+		} catch (IOException e) {
+			throw new OperatorException("Cannot read the checkpoint in " + checkpointDirectory + ": " + e.getMessage(), e);
+		}
+		
+		if (checkpoint == null){
+			return;
+		}
+		
+		if (checkpoint.parameters.length() != model.numParams()){
+			throw new OperatorException("The checkpoint in " + checkpointDirectory 
+					+ " does not fit the network, it has " + checkpoint.parameters.length() 
+					+ " parameters instead of " + model.numParams() + ".");
+		}
+		
+		model.setParameters(Precision.copy(checkpoint.parameters));
+		model.setUpdater(checkpoint.updater);
+		this.firstEpoch = checkpoint.epoch + 1;
+	}
+	
+	/**
+	 * Train the network on the examples, optionally holding out validation examples for early stopping.
+	 */
+	private void fit(ExampleSet exampleSet, boolean shuffle, boolean normalization){
+		
+		// hold out the validation examples, both parts are views on the same example table
+		ExampleSet trainingSet = exampleSet;
+		EarlyStopping stopping = null;
+		if (validationFraction > 0){
+			SplittedExampleSet split = new SplittedExampleSet(exampleSet, 1 - validationFraction, 
+					SplittedExampleSet.SHUFFLED_SAMPLING, true, (int) configuration.getConf(0).getSeed());
+			SplittedExampleSet validationSet = new SplittedExampleSet(split);
+			split.selectSingleSubset(0);
+			validationSet.selectSingleSubset(1);
+			trainingSet = split;
+			stopping = new EarlyStopping(validationSet, evaluationFrequency, patience);
+		}
+		
+		if (batchSize <= 0 || batchSize >= trainingSet.size()){
+			trainWholeSet(trainingSet, normalization, stopping);
+		} else {
+			trainMiniBatches(trainingSet, shuffle, normalization, stopping);
+		}
+		
+		if (stopping != null){
+			stopping.restoreBest(model);
+		}
 		
-		this.model = new MultiLayerNetwork(configuration);
-		model.init();
-		DataSet data = DL4JConvert.convert2DataSet(exampleSet);
+		if (foldNormalization && isNormalizingInput() && foldNormalization(model, columnMeans, columnStds)){
+			this.columnMeans = null;
+			this.columnStds = null;
+			this.statistics = null;
+		}
+	}
+	
+	/**
+	 * Write a checkpoint if it is due and check whether to stop the training early.
+	 * 
+	 * @param epoch the index of the finished epoch
+	 * @param stopping the early stopping, null if not used
+	 * @return true if the training should stop
+	 */
+	private boolean endOfEpoch(int epoch, EarlyStopping stopping){
+		if (checkpoints != null && (epoch + 1) % checkpointFrequency == 0){
+			checkpoints.save(epoch, model);
+		}
+		return stopping != null && stopping.afterEpoch(model, epoch, columnMeans, columnStds);
+	}
+	
+	/**
+	 * Update the trained network in place with a new batch of examples.
+	 * 
+	 * The batch is converted once and the network is fitted on it the given number of times,
+	 * each time with the number of iterations of its configuration.
+	 * Neither the configuration nor the parameters of the network are rebuilt or copied.
+	 * If the running statistics of the features are kept, they can be updated with the batch on the way,
+	 * and the normalization follows them.
+	 * 
+	 * @param exampleSet the new batch of examples, with the label
+	 * @param steps the number of times the network is fitted on the batch
+	 * @param updateStatistics whether to update the normalization statistics with the batch
+	 * @throws OperatorException if the examples do not fit the model
+	 */
+	public void update(ExampleSet exampleSet, int steps, boolean updateStatistics) throws OperatorException{
+		
+		if (materialize() == null){
+			throw new OperatorException("The model has not been trained.");
+		}
+		
+		// the plain Java scorer is exported again from the updated network
+		synchronized (this) {
+			scorer = null;
+		}
+		
+		Precision.enter(precision);
+		try {
+			fitBatch(exampleSet, steps, updateStatistics);
+		} finally {
+			Precision.leave();
+		}
+	}
+	
+	/**
+	 * Update the trained network with a new batch of examples in the precision of the network.
+	 */
+	private void fitBatch(ExampleSet exampleSet, int steps, boolean updateStatistics) throws OperatorException{
+		
+		Attribute label = exampleSet.getAttributes().getLabel();
+		if (label == null){
+			throw new OperatorException("The examples used to update the model have no label.");
+		}
+		if (label.isNominal() != getLabel().isNominal()){
+			throw new OperatorException("The label " + label.getName() + " has another type than the label the model was trained on.");
+		}
+		
+		Attribute[] features = ExampleSetConverter.resolveAttributes(exampleSet, featureNames);
+		
+		// the label values of the batch are placed in the columns of the values the network was trained on
+		ExampleSetConverter converter;
+		if (label.isNominal()){
+			NominalMapping mapping = getLabelMapping();
+			for (String value : label.getMapping().getValues()){
+				if (mapping.getIndex(value) < 0){
+					throw new OperatorException("The label value " + value + " is unknown to the model.");
+				}
+			}
+			converter = new ExampleSetConverter(features, label, mapping);
+		} else {
+			converter = new ExampleSetConverter(features, label);
+		}
+		
+		RunningStatistics batchStatistics = updateStatistics && isNormalizingInput() ? statistics : null;
+		DataSet data = converter.convert(exampleSet, batchStatistics);
+		
+		if (batchStatistics != null){
+			columnMeans.assign(statistics.getMeans());
+			columnStds.assign(statistics.getStandardDeviations(Nd4j.EPS_THRESHOLD));
+		}
+		if (isNormalizingInput()){
+			ExampleSetConverter.normalize(data.getFeatures(), columnMeans, columnStds);
+		}
+		
+		for (int i=0; i<steps; i++){
+			model.fit(data);
+		}
+	}
+	
+	/**
+	 * Fold the means and standard deviations into the weights and bias of the first layer,
+	 * so that the features need not be normalized during prediction.
+	 * 
+	 * As the first layer computes ((x - m) / s) W + b, it is replaced by x W' + b' with
+	 * W' = W / s (each row of W divided by the standard deviation of its feature) and b' = b - (m / s) W.
+	 * Only dense and RBM first layers can be folded, otherwise nothing is changed.
+	 * 
+	 * @param network the trained network, whose first layer is changed in place
+	 * @param means the means of the features
+	 * @param stds the standard deviations of the features
+	 * @return true if the normalization has been folded into the first layer
+	 */
+	static boolean foldNormalization(MultiLayerNetwork network, INDArray means, INDArray stds){
+		
+		org.deeplearning4j.nn.api.Layer first = network.getLayer(0);
+		if (first.getClass() != DenseLayer.class && first.getClass() != RBM.class){
+			return false;
+		}
+		
+		INDArray weights = first.getParam("W");
+		INDArray bias = first.getParam("b");
+		
+		// b' = b - (m / s) W, computed before W is changed
+		bias.subi(means.div(stds).mmul(weights));
+		weights.diviColumnVector(stds.transpose());
+		return true;
+	}
+	
+	/**
+	 * Train the model on the whole exampleset as one batch.
+	 */
+	private void trainWholeSet(ExampleSet exampleSet, boolean normalization, EarlyStopping stopping){
+		
+		// the statistics of the features are accumulated while the exampleset is converted
+		ExampleSetConverter converter = new ExampleSetConverter(exampleSet, true);
+		RunningStatistics statistics = normalization && !keepStatistics ? new RunningStatistics(converter.getNumFeatures()) : null;
+		DataSet data = converter.convert(exampleSet, statistics);
 
 		/*
-		 * Haven't check version 3.8, but in version 3.7, shuffle() is not correctly implemented
-		 * in DL4J, so currently we shuffle the examples before they enter learners.
+		 * The examples are not shuffled here, as the whole exampleset is trained as one batch,
+		 * whose gradient does not depend on the order of the examples.
 		 */
 		
-//		if (shuffle){
-//			data.shuffle();
-//		}
-		
-		// normalize the training data and record the mean and standard deviation
-		if (normalization){
-			this.columnMeans = data.getFeatures().mean(0);
-			this.columnStds = data.getFeatureMatrix().std(0);
-	        data.setFeatures(data.getFeatures().subiRowVector(columnMeans));
-	        this.columnStds.addi(Nd4j.scalar(Nd4j.EPS_THRESHOLD));
-	        data.setFeatures(data.getFeatures().diviRowVector(columnStds));
+		// normalize the training data in one pass and record the mean and standard deviation
+		if (keepStatistics){
+			ExampleSetConverter.normalize(data.getFeatures(), columnMeans, columnStds);
+		} else if (normalization){
+			this.statistics = statistics;
+			this.columnMeans = statistics.getMeans();
+			this.columnStds = statistics.getStandardDeviations(Nd4j.EPS_THRESHOLD);
+			ExampleSetConverter.normalize(data.getFeatures(), columnMeans, columnStds);
 		} else {
 			this.columnMeans = org.nd4j.linalg.factory.Nd4j.zeros(data.getFeatures().columns());
 			this.columnStds = org.nd4j.linalg.factory.Nd4j.ones(data.getFeatures().columns());
 		}
 		
 		// train the model
-		model.fit(data);
+		for (int i=firstEpoch; i<epochs; i++){
+			model.fit(data);
+			if (endOfEpoch(i, stopping)){
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Train the model epoch by epoch over mini-batches converted on demand,
+	 * only one mini-batch is held in memory at a time.
+	 * If the examples are shuffled, each epoch visits them in a new order drawn from the seed of the configuration.
+	 */
+	private void trainMiniBatches(ExampleSet exampleSet, boolean shuffle, boolean normalization, EarlyStopping stopping){
+		
+		// the data rows are resolved once for the statistics and the mini-batches
+		ExampleSetConverter converter = new ExampleSetConverter(exampleSet, true);
+		DataRow[] rows = ExampleSetConverter.resolveRows(exampleSet);
+		ExampleSetDataSetIterator batches = new ExampleSetDataSetIterator(exampleSet, rows, converter, batchSize);
+		if (shuffle){
+			batches.setShuffle(new Random(configuration.getConf(0).getSeed()));
+		}
+		
+		// convert and normalize the next mini-batches on worker threads while the current one is trained,
+		// not needed if the replicas convert their own mini-batches
+		DataSetIterator iterator = batches;
+		if (prefetchBatches > 0 && trainingWorkers <= 1){
+			iterator = new PrefetchDataSetIterator(batches, prefetchBatches);
+		}
+		
+		try {
+			// compute the mean and standard deviation in one pass over the examples, then normalize each batch on demand
+			if (keepStatistics){
+				iterator.setPreProcessor(new NormalizingPreProcessor(columnMeans, columnStds));
+			} else if (normalization){
+				RunningStatistics statistics = new RunningStatistics(converter.getNumFeatures());
+				converter.accumulateStatistics(rows, statistics);
+				this.statistics = statistics;
+				this.columnMeans = statistics.getMeans();
+				this.columnStds = statistics.getStandardDeviations(Nd4j.EPS_THRESHOLD);
+				iterator.setPreProcessor(new NormalizingPreProcessor(columnMeans, columnStds));
+			} else {
+				this.columnMeans = org.nd4j.linalg.factory.Nd4j.zeros(iterator.inputColumns());
+				this.columnStds = org.nd4j.linalg.factory.Nd4j.ones(iterator.inputColumns());
+			}
+			
+			if (trainingWorkers > 1){
+				trainInParallel(batches, stopping);
+			} else {
+				// train the model, fit() resets the iterator before each pass
+				for (int i=firstEpoch; i<epochs; i++){
+					model.fit(iterator);
+					if (endOfEpoch(i, stopping)){
+						break;
+					}
+				}
+			}
+		} finally {
+			if (iterator instanceof PrefetchDataSetIterator){
+				((PrefetchDataSetIterator) iterator).shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Train replicas of the network concurrently and average their parameters.
+	 * 
+	 * The mini-batches of each epoch are dealt out round-robin to the replicas, 
+	 * each replica converts and trains its own mini-batches on its own thread.
+	 * After every replica has trained the given number of mini-batches, 
+	 * the parameters of the replicas that have been trained are averaged into the model and copied back to all replicas.
+	 * The state of the updaters (e.g. momentum) is kept per replica and not averaged.
+	 */
+	private void trainInParallel(final ExampleSetDataSetIterator batches, EarlyStopping stopping){
+		
+		final MultiLayerNetwork[] replicas = new MultiLayerNetwork[trainingWorkers];
+		for (int w=0; w<replicas.length; w++){
+			replicas[w] = copyNetwork(model);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(replicas.length, new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DL4J training worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		try {
+			for (int epoch=firstEpoch; epoch<epochs; epoch++){
+				
+				// draws a new order of the examples if they are shuffled
+				batches.reset();
+				int numBatches = batches.getNumBatches();
+				int round = replicas.length * averagingFrequency;
+				
+				for (int start=0; start<numBatches; start+=round){
+					
+					List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+					for (int w=0; w<replicas.length && start + w < numBatches; w++){
+						tasks.add(new TrainingTask(replicas[w], batches, start + w, Math.min(start + round, numBatches), replicas.length));
+					}
+					
+					for (Future<Boolean> future : executor.invokeAll(tasks)){
+						future.get();
+					}
+					
+					averageParameters(replicas, tasks.size());
+				}
+				
+				if (endOfEpoch(epoch, stopping)){
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while training the network replicas", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to train a network replica", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Average the parameters of the first replicas into the model and copy them back to all replicas.
+	 */
+	private void averageParameters(MultiLayerNetwork[] replicas, int trained){
+		
+		INDArray average = replicas[0].params().dup();
+		for (int w=1; w<trained; w++){
+			average.addi(replicas[w].params());
+		}
+		average.divi(trained);
+		
+		model.setParameters(average);
+		for (MultiLayerNetwork replica : replicas){
+			replica.setParameters(average);
+		}
+	}
+	
+	/**
+	 * The task training one replica on every n-th mini-batch of a range.
+	 */
+	private static class TrainingTask implements Callable<Boolean> {
+		
+		private final MultiLayerNetwork replica;
+		
+		private final ExampleSetDataSetIterator batches;
+		
+		private final int first;
+		
+		private final int end;
+		
+		private final int step;
+		
+		TrainingTask(MultiLayerNetwork replica, ExampleSetDataSetIterator batches, int first, int end, int step){
+			this.replica = replica;
+			this.batches = batches;
+			this.first = first;
+			this.end = end;
+			this.step = step;
+		}
+		
+		@Override
+		public Boolean call() throws Exception {
+			for (int index=first; index<end; index+=step){
+				replica.fit(batches.getBatch(index));
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Create an independent copy of a network with the same configuration and parameters.
+	 * MultiLayerNetwork.clone() of DL4J only copies the array of the layers but shares the layers themselves,
+	 * so the network is rebuilt from its configuration and the parameters are copied.
+	 */
+	private static MultiLayerNetwork copyNetwork(MultiLayerNetwork network){
+		MultiLayerNetwork copy = new MultiLayerNetwork(network.getLayerWiseConfigurations().clone());
+		copy.init();
+		copy.setParameters(network.params().dup());
+		return copy;
 	}
 	
 	/**
@@ -312,107 +1680,203 @@ public class MultiLayerNetModel extends PredictionModel{
 	 * This method may be deprecated later
 	 */
 	public void train(ExampleSet exampleSet, MultiLayerConfiguration configuration, 
-			boolean shuffle, boolean normalization, List<String> layerNames){
+			boolean shuffle, boolean normalization, List<String> layerNames) throws OperatorException{
 		this.configuration = configuration;
 		this.names = layerNames;
 		train(exampleSet, shuffle, normalization);
 	}
 	
 	/**
-	 * Clone the model with full information
-	 * This method is not used implemented and may be deprecated later.
-	 * Not used in current implementation, thus not implemented.
+	 * Clone the model with full information.
+	 * The network and the normalization statistics are copied,
+	 * so training or changing the clone does not affect this model.
 	 */
 	public MultiLayerNetModel clone(){
-		return null;
+		materialize();
+		Precision.enterUninterruptibly(precision);
+		try {
+			return copyModel();
+		} finally {
+			Precision.leave();
+		}
 	}
 	
+	/**
+	 * Clone the model in the precision of the network.
+	 */
+	private MultiLayerNetModel copyModel(){
+		
+		MultiLayerNetModel clone = new MultiLayerNetModel(getTrainingHeader());
+		copySettings(clone);
+		
+		if (model != null){
+			clone.model = copyNetwork(model);
+			clone.configuration = clone.model.getLayerWiseConfigurations();
+		}
+		
+		return clone;
+	}
 	
-	public String toString(){
+	/**
+	 * Copy everything but the network into another model, i.e. the names, the normalization,
+	 * the configuration and the options of training and scoring. Must be called in the precision of this model.
+	 * 
+	 * @param clone the model to copy into
+	 */
+	protected void copySettings(MultiLayerNetModel clone){
 		
-		String result = "Neural Network:";
-		result += "\n ===================================\n";
+		clone.names = names == null ? null : new ArrayList<String>(names);
+		clone.featureNames = featureNames == null ? null : new ArrayList<String>(featureNames);
+		clone.columnMeans = columnMeans == null ? null : columnMeans.dup();
+		clone.columnStds = columnStds == null ? null : columnStds.dup();
+		clone.statistics = statistics == null ? null : new RunningStatistics(statistics);
+		clone.configuration = configuration == null ? null : configuration.clone();
 		
-		int numLayer = model.getnLayers();
+		clone.batchSize = batchSize;
+		clone.epochs = epochs;
+		clone.prefetchBatches = prefetchBatches;
+		clone.trainingWorkers = trainingWorkers;
+		clone.averagingFrequency = averagingFrequency;
+		clone.validationFraction = validationFraction;
+		clone.evaluationFrequency = evaluationFrequency;
+		clone.patience = patience;
+		clone.checkpointDirectory = checkpointDirectory;
+		clone.checkpointFrequency = checkpointFrequency;
+		clone.resumeFromCheckpoint = resumeFromCheckpoint;
+		clone.scoringBatchSize = scoringBatchSize;
+		clone.scoringThreads = scoringThreads;
+		clone.foldNormalization = foldNormalization;
+		clone.topConfidences = topConfidences;
+		clone.javaScoring = javaScoring;
+		clone.precision = precision;
+	}
+	
+	/**
+	 * Write the model, with the network in the compact format of {@link NetworkFormat}
+	 * instead of the Java serialization of its layers.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException{
+		out.defaultWriteObject();
+		NetworkFormat.StoredNetwork unbuilt;
+		synchronized (this) {
+			unbuilt = stored;
+		}
+		out.writeBoolean(unbuilt != null || model != null);
+		if (unbuilt != null){
+			// a network never built is written as it was read
+			unbuilt.write(out);
+		} else if (model != null){
+			NetworkFormat.write(model, out);
+		} else {
+			out.writeObject(configuration == null ? null : configuration.toJson());
+		}
+	}
+	
+	/**
+	 * Read the model. The parameters of the network are only read into one block,
+	 * the network is built in the precision it was trained with on its first use, see {@link #materialize()}.
+	 * 
+	 * The fields are read one by one, so the fields missing in the form of an older version get their defaults,
+	 * and the network of a model stored with version 0.3.1 is taken from its Java serialization.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
 		
-		configuration.toString();
+		ObjectInputStream.GetField fields = in.readFields();
+		names = (List<String>) fields.get("names", null);
+		featureNames = (List<String>) fields.get("featureNames", null);
+		columnMeans = (INDArray) fields.get("columnMeans", null);
+		columnStds = (INDArray) fields.get("columnStds", null);
+		statistics = (RunningStatistics) fields.get("statistics", null);
+		batchSize = fields.get("batchSize", 0);
+		epochs = fields.get("epochs", 1);
+		prefetchBatches = fields.get("prefetchBatches", 0);
+		trainingWorkers = fields.get("trainingWorkers", 1);
+		averagingFrequency = fields.get("averagingFrequency", 1);
+		validationFraction = fields.get("validationFraction", 0d);
+		evaluationFrequency = fields.get("evaluationFrequency", 1);
+		patience = fields.get("patience", 5);
+		checkpointDirectory = (File) fields.get("checkpointDirectory", null);
+		checkpointFrequency = fields.get("checkpointFrequency", 1);
+		resumeFromCheckpoint = fields.get("resumeFromCheckpoint", false);
+		scoringBatchSize = fields.get("scoringBatchSize", 0);
+		scoringThreads = fields.get("scoringThreads", 1);
+		foldNormalization = fields.get("foldNormalization", false);
+		topConfidences = fields.get("topConfidences", 0);
+		javaScoring = fields.get("javaScoring", false);
+		precision = (DataBuffer.Type) fields.get("precision", null);
 		
-		for (int i=0; i<numLayer; i++){
-			org.deeplearning4j.nn.api.Layer layer = model.getLayer(i);
-			// don't know why there is no API like getActivationFunction()......
-//			String activation = model.getLayer(i)
-			
-//			result += "\n" + layer.paramTable().get("W").toString();
-//			result += "\n";
-			
-			
-			
-			if (layer.getClass() == DenseLayer.class){
-				
-				result += "\nLayer " + i + ": " + names.get(i) + " (Dense Layer)" ;
-				result += "\n ------------------------------------";
-				INDArray array = layer.paramTable().get("W");
-				for (int j=0; j<array.shape()[0]; j++){
-					result += "\n" + array.getRow(j).toString();
-				}
-				result += "\n" + model.getLayer(i).paramTable().get("b");
-				result += "\n";
-				
-			} else if (layer.getClass() == OutputLayer.class){
-				
-				result += "\nLayer " + i + ": " + names.get(i) + " (Output Layer)";
-				result += "\n ------------------------------------";
-				INDArray array = layer.paramTable().get("W");
-				for (int j=0; j<array.shape()[0]; j++){
-					result += "\n" + array.getRow(j).toString();
-				}
-				result += "\n" + model.getLayer(i).paramTable().get("b");
-				result += "\n";
-				
-			} else if (layer.getClass() == RBM.class){
-				
-				result += "\nLayer " + i + ": " + names.get(i) + " (RBM Layer)";
-				result += "\n ------------------------------------";
-				INDArray array = layer.paramTable().get("W");
-				for (int j=0; j<array.shape()[0]; j++){
-					result += "\n" + array.getRow(j).toString();
-				}
-				result += "\n" + model.getLayer(i).paramTable().get("b");
-				result += "\n";
-				
-			} else if (layer.getClass() == SubsamplingLayer.class){
-				
-				result += "\nLayer " + i + ": " + names.get(i) + " (Subsampling Layer)";
-				result += "\n ------------------------------------";
-				result += "\n";
-				
-			} else if (layer.getClass() == ConvolutionLayer.class){
-				
-				result += "\nLayer " + i + ": " + names.get(i) + " (Convolutional Layer)";
-				result += "\n ------------------------------------";
-				INDArray array3D = layer.paramTable().get("W");
-				
-//				int depth = array3D.shape()[2];
-				
-				result += "\n" + array3D.toString();
-				
-//				for (int d = 0; d<depth; d++){
-//					result += "\n    Filter " + d;
-//					INDArray array2D = array3D.tensorssAlongDimension(dimension);
-//					
-//					for (int j=0; j<array2D.shape()[0]; j++){
-//						result += "\n" + array2D.getRow(j).toString();
-//					}
-//
-//					result += "\n" + model.getLayer(i).paramTable().get("b").getRow(d);					
-//				}
-				
-				result += "\n";
-				
+		int version = fields.get("format", 0);
+		format = FORMAT_VERSION;
+		if (version == 0){
+			// the form of version 0.3.1
+			model = (MultiLayerNetwork) fields.get("model", null);
+			configuration = (MultiLayerConfiguration) fields.get("configuration", null);
+			if (configuration == null && model != null){
+				configuration = model.getLayerWiseConfigurations();
 			}
+			return;
+		}
+		if (version > FORMAT_VERSION){
+			throw new IOException("The model has been stored with a newer version of the extension, format " + version + ".");
+		}
+		
+		if (in.readBoolean()){
+			stored = NetworkFormat.read(in);
+			configuration = stored.getConfiguration();
+		} else {
+			String json = (String) in.readObject();
+			configuration = json == null ? null : MultiLayerConfiguration.fromJson(json);
+		}
+	}
+	
+	/**
+	 * Retrieve the summaries of the layers of the network, without any of their weights.
+	 * The network of a retrieved model is built with the first call.
+	 * @return the summary of each layer, empty if the model has not been trained
+	 */
+	public List<LayerSummary> getLayerSummaries(){
+		
+		List<LayerSummary> summaries = new ArrayList<LayerSummary>();
+		MultiLayerNetwork network = materialize();
+		if (network == null){
+			return summaries;
+		}
+		
+		for (int i=0; i<network.getnLayers(); i++){
+			String name = names != null && i < names.size() ? names.get(i) : "Layer " + i;
+			summaries.add(new LayerSummary(i, name, network.getLayer(i)));
+		}
+		return summaries;
+	}
+	
+	/**
+	 * Describe the network layer by layer.
+	 * Only the summaries of the layers are written, as the weights of a wide network would not fit
+	 * into any text; the weights are shown page by page by the renderer of the model.
+	 */
+	public String toString(){
+		
+		StringBuilder result = new StringBuilder("Neural Network:");
+		result.append("\n ===================================\n");
+		
+		List<LayerSummary> summaries = getLayerSummaries();
+		if (summaries.isEmpty()){
+			result.append("\nThe network has not been trained.\n");
+		}
+		
+		int total = 0;
+		for (LayerSummary summary : summaries){
+			result.append("\n").append(summary.toString());
+			result.append("\n ------------------------------------\n");
+			total += summary.getParameterCount();
+		}
+		
+		if (!summaries.isEmpty()){
+			result.append("\nTotal parameters: ").append(total).append("\n");
 		}
 		
-		return result;
+		return result.toString();
 	}
 	
 }
@@ -0,0 +1,230 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * The compact binary format a trained network is stored in with its model.
+ *
+ * Instead of the Java serialization of the network object graph, the configuration is written as JSON
+ * and the parameters as one flat block of raw little-endian values, in the precision of the network.
+ * The block is read back into one direct buffer which ND4J wraps as the parameter vector
+ * and copies into the layers in one go, so the heap is not filled with the serialized object graph
+ * of the layers and their arrays.
+ *
+ * A network read back is kept as its raw block until it is needed, e.g. for scoring,
+ * so a model that is only passed on or stored again never builds and initializes its network.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+class NetworkFormat {
+
+	/**
+	 * The marker at the beginning of each stored network.
+	 */
+	private static final int MAGIC = 0x444c344e;
+
+	/**
+	 * The version of the format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The number of bytes written or read at once.
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private NetworkFormat(){
+		// utility class
+	}
+
+	/**
+	 * Write a network.
+	 *
+	 * @param network the network to write
+	 * @param out the output to write to
+	 * @throws IOException if the network cannot be written
+	 */
+	static void write(MultiLayerNetwork network, DataOutput out) throws IOException{
+
+		byte[] configuration = network.getLayerWiseConfigurations().toJson().getBytes(UTF8);
+		INDArray parameters = network.params();
+		DataBuffer data = parameters.data();
+		boolean single = data.dataType() == DataBuffer.Type.FLOAT;
+		int length = parameters.length();
+
+		writeHeader(out, single, configuration, length);
+
+		// the parameters are written chunk by chunk through a little-endian buffer
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		int width = single ? 4 : 8;
+		for (int i=0; i<length; i++){
+			if (chunk.remaining() < width){
+				out.write(chunk.array(), 0, chunk.position());
+				chunk.clear();
+			}
+			if (single){
+				chunk.putFloat(parameters.getFloat(i));
+			} else {
+				chunk.putDouble(parameters.getDouble(i));
+			}
+		}
+		out.write(chunk.array(), 0, chunk.position());
+	}
+
+	private static void writeHeader(DataOutput out, boolean single, byte[] configuration, int length) throws IOException{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeBoolean(single);
+		out.writeInt(configuration.length);
+		out.write(configuration);
+		out.writeInt(length);
+	}
+
+	/**
+	 * A network read but not built yet.
+	 */
+	static class StoredNetwork {
+
+		/**
+		 * The configuration as JSON.
+		 */
+		private final byte[] json;
+
+		/**
+		 * The configuration of the network.
+		 */
+		private final MultiLayerConfiguration configuration;
+
+		/**
+		 * Whether the parameters are single precision values.
+		 */
+		private final boolean single;
+
+		/**
+		 * The number of parameters.
+		 */
+		private final int length;
+
+		/**
+		 * The block of the parameters, in little-endian order.
+		 */
+		private final ByteBuffer block;
+
+		StoredNetwork(byte[] json, boolean single, int length, ByteBuffer block){
+			this.json = json;
+			this.configuration = MultiLayerConfiguration.fromJson(new String(json, UTF8));
+			this.single = single;
+			this.length = length;
+			this.block = block;
+		}
+
+		/**
+		 * Retrieve the configuration of the network, which is available without building the network.
+		 * @return the configuration
+		 */
+		MultiLayerConfiguration getConfiguration(){
+			return configuration;
+		}
+
+		/**
+		 * Build the network with its parameters.
+		 * The network is created in the current precision, see {@link com.rapidminerchina.extension.dl4j.data.Precision}.
+		 *
+		 * @return the network
+		 */
+		MultiLayerNetwork build(){
+
+			ByteBuffer values = block.duplicate();
+			int width = single ? 4 : 8;
+			DataBuffer.Type type = single ? DataBuffer.Type.FLOAT : DataBuffer.Type.DOUBLE;
+			DataBuffer data;
+			if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN){
+				// ND4J reads the buffer in the native order, which is the order of the block
+				data = Nd4j.createBuffer(values, type, length);
+			} else {
+				values.order(ByteOrder.LITTLE_ENDIAN);
+				data = Nd4j.createBuffer(new int[]{length}, type);
+				for (int i=0; i<length; i++){
+					data.put(i, single ? values.getFloat(i * width) : values.getDouble(i * width));
+				}
+			}
+
+			return new MultiLayerNetwork(configuration.clone(), Nd4j.create(data, new int[]{1, length}));
+		}
+
+		/**
+		 * Write the network again as it was read, without building it.
+		 *
+		 * @param out the output to write to
+		 * @throws IOException if the network cannot be written
+		 */
+		void write(DataOutput out) throws IOException{
+
+			writeHeader(out, single, json, length);
+
+			ByteBuffer values = block.duplicate();
+			byte[] chunk = new byte[CHUNK_SIZE];
+			while (values.hasRemaining()){
+				int size = Math.min(chunk.length, values.remaining());
+				values.get(chunk, 0, size);
+				out.write(chunk, 0, size);
+			}
+		}
+	}
+
+	/**
+	 * Read a network written by {@link #write(MultiLayerNetwork, DataOutput)}.
+	 * Only the configuration is parsed, the parameters are kept as a raw block until the network is built.
+	 *
+	 * @param in the input to read from
+	 * @return the stored network
+	 * @throws IOException if the input is not a network of this format
+	 */
+	static StoredNetwork read(DataInput in) throws IOException{
+
+		if (in.readInt() != MAGIC){
+			throw new IOException("The stored network is not in the format of the deep learning extension.");
+		}
+		int version = in.readInt();
+		if (version != VERSION){
+			throw new IOException("The stored network has the unknown format version " + version + ".");
+		}
+
+		boolean single = in.readBoolean();
+		byte[] configuration = new byte[in.readInt()];
+		in.readFully(configuration);
+		int length = in.readInt();
+
+		// the block is read into one direct buffer, which holds at most 2 GB
+		int width = single ? 4 : 8;
+		long bytes = (long) length * width;
+		if (length < 0 || bytes > Integer.MAX_VALUE){
+			throw new IOException("The stored network has " + length + " parameters, "
+					+ "which do not fit into one block of " + (single ? "float" : "double") + " values.");
+		}
+		ByteBuffer block = ByteBuffer.allocateDirect((int) bytes);
+		byte[] chunk = new byte[CHUNK_SIZE];
+		while (block.hasRemaining()){
+			int size = Math.min(chunk.length, block.remaining());
+			in.readFully(chunk, 0, size);
+			block.put(chunk, 0, size);
+		}
+		block.flip();
+
+		return new StoredNetwork(configuration, single, length, block);
+	}
+}
@@ -0,0 +1,234 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.io.Serializable;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * A parameter array of a network stored with 8-bit integers and one scale per channel,
+ * or with floats if it is not quantized, e.g. a bias.
+ *
+ * The values are quantized symmetrically, value = quantized * scale with quantized in [-127, 127],
+ * the scale of a channel being its largest absolute value divided by 127.
+ * The channel is the output unit of a weight matrix of a dense layer, i.e. its column,
+ * or the filter of the weights of a convolutional layer, i.e. its first dimension.
+ * The values of a channel are stored contiguously, so a weight matrix of a dense layer is stored transposed.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+class QuantizedArray implements Serializable {
+
+	/**
+	 * The serial version of the class, fixed as the arrays are stored with each quantized model.
+	 */
+	private static final long serialVersionUID = -3009024791939925918L;
+
+	/**
+	 * The largest absolute quantized value.
+	 */
+	static final int RANGE = 127;
+
+	/**
+	 * The shape of the array.
+	 */
+	private final int[] shape;
+
+	/**
+	 * The dimension of the channels, 0 or 1, -1 if the array is stored with floats.
+	 */
+	private final int channelAxis;
+
+	/**
+	 * The number of channels.
+	 */
+	private final int channels;
+
+	/**
+	 * The number of values of each channel.
+	 */
+	private final int channelSize;
+
+	/**
+	 * The quantized values, channel by channel, null if the array is stored with floats.
+	 */
+	private final byte[] values;
+
+	/**
+	 * The scale of each channel, null if the array is stored with floats.
+	 */
+	private final float[] scales;
+
+	/**
+	 * The values in the order of the array, null if the array is quantized.
+	 */
+	private final float[] floats;
+
+	/**
+	 * Store an array with floats.
+	 * @param array the array
+	 */
+	QuantizedArray(INDArray array){
+		this.shape = array.shape().clone();
+		this.channelAxis = -1;
+		this.channels = 1;
+		this.channelSize = array.length();
+		this.values = null;
+		this.scales = null;
+		this.floats = new float[array.length()];
+		int[] indices = new int[shape.length];
+		for (int k=0; k<floats.length; k++){
+			floats[k] = (float) array.getDouble(unravel(k, indices));
+		}
+	}
+
+	/**
+	 * Quantize an array.
+	 *
+	 * @param array the array
+	 * @param channelAxis the dimension of the channels, 0 or 1 for a matrix
+	 * @param perChannel true for one scale per channel, false for one scale for the whole array
+	 */
+	QuantizedArray(INDArray array, int channelAxis, boolean perChannel){
+
+		this.shape = array.shape().clone();
+		this.channelAxis = channelAxis;
+		this.channels = shape[channelAxis];
+		this.channelSize = array.length() / channels;
+		this.values = new byte[array.length()];
+		this.scales = new float[channels];
+		this.floats = null;
+
+		// the largest absolute value of each channel
+		double[] largest = new double[channels];
+		double overall = 0;
+		for (int c=0; c<channels; c++){
+			for (int k=0; k<channelSize; k++){
+				largest[c] = Math.max(largest[c], Math.abs(get(array, c, k)));
+			}
+			overall = Math.max(overall, largest[c]);
+		}
+
+		for (int c=0; c<channels; c++){
+			double max = perChannel ? largest[c] : overall;
+			scales[c] = max > 0 ? (float) (max / RANGE) : 1;
+			for (int k=0; k<channelSize; k++){
+				values[c * channelSize + k] = quantize(get(array, c, k), scales[c]);
+			}
+		}
+	}
+
+	/**
+	 * Quantize a value with a scale, rounding to the nearest integer and clipping to the range.
+	 *
+	 * @param value the value
+	 * @param scale the scale
+	 * @return the quantized value
+	 */
+	static byte quantize(double value, double scale){
+		long quantized = Math.round(value / scale);
+		return (byte) Math.max(-RANGE, Math.min(RANGE, quantized));
+	}
+
+	/**
+	 * Read the k-th value of a channel from an array.
+	 */
+	private double get(INDArray array, int channel, int k){
+		if (channelAxis == 1){
+			// the column of a matrix
+			return array.getDouble(k, channel);
+		}
+		int[] indices = unravel(channel * channelSize + k, new int[shape.length]);
+		return array.getDouble(indices);
+	}
+
+	/**
+	 * Convert an index in the order of the array into the indices of its dimensions.
+	 */
+	private int[] unravel(int index, int[] indices){
+		for (int d=shape.length-1; d>=0; d--){
+			indices[d] = index % shape[d];
+			index /= shape[d];
+		}
+		return indices;
+	}
+
+	/**
+	 * Retrieve whether the array is quantized.
+	 * @return true if the array is stored with 8-bit integers
+	 */
+	boolean isQuantized(){
+		return values != null;
+	}
+
+	/**
+	 * Retrieve the quantized values, the values of each channel contiguous.
+	 * @return the quantized values, null if the array is stored with floats
+	 */
+	byte[] getValues(){
+		return values;
+	}
+
+	/**
+	 * Retrieve the scale of each channel.
+	 * @return the scales, null if the array is stored with floats
+	 */
+	float[] getScales(){
+		return scales;
+	}
+
+	/**
+	 * Retrieve the values of an array stored with floats.
+	 * @return the values in the order of the array, null if the array is quantized
+	 */
+	float[] getFloats(){
+		return floats;
+	}
+
+	/**
+	 * Retrieve the shape of the array.
+	 * @return the shape
+	 */
+	int[] getShape(){
+		return shape.clone();
+	}
+
+	/**
+	 * Retrieve the memory the values take.
+	 * @return the number of bytes of the values and scales
+	 */
+	long getBytes(){
+		return values != null ? values.length + 4L * scales.length : 4L * floats.length;
+	}
+
+	/**
+	 * Restore the array with floating point values in the current precision.
+	 * @return a new array
+	 */
+	INDArray dequantize(){
+
+		int length = channels * channelSize;
+		double[] data = new double[length];
+		if (values == null){
+			for (int k=0; k<length; k++){
+				data[k] = floats[k];
+			}
+		} else if (channelAxis == 1){
+			// the matrix is stored transposed, column by column
+			int rows = shape[0];
+			int columns = shape[1];
+			for (int j=0; j<columns; j++){
+				for (int i=0; i<rows; i++){
+					data[i * columns + j] = values[j * rows + i] * (double) scales[j];
+				}
+			}
+		} else {
+			for (int k=0; k<length; k++){
+				data[k] = values[k] * (double) scales[k / channelSize];
+			}
+		}
+
+		return Nd4j.create(data, shape, 'c');
+	}
+}
@@ -0,0 +1,307 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.nn.layers.convolution.ConvolutionLayer;
+import org.deeplearning4j.nn.layers.feedforward.dense.DenseLayer;
+import org.deeplearning4j.nn.layers.feedforward.rbm.RBM;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.operator.OperatorException;
+import com.rapidminerchina.extension.dl4j.data.ExampleSetConverter;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * A neural network model whose weights are quantized to 8-bit integers after training.
+ *
+ * The weights of the dense, RBM and convolutional layers are stored with one byte per weight
+ * and one scale per output unit or filter, see {@link QuantizedArray}; the biases are stored with floats.
+ * No network with floating point weights is kept, so the model takes about an eighth of the memory
+ * of a model trained in double precision.
+ *
+ * A network of dense layers and an output layer is scored with integer kernels, see {@link QuantizedScorer},
+ * with the scales of the inputs of its layers calibrated on a sample of examples.
+ * Any other network, e.g. with convolutional layers, is restored with floating point weights for each prediction
+ * and scored with ND4J, the restored network is dropped afterwards.
+ *
+ * A quantized model cannot be trained or updated any further.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class QuantizedNetModel extends MultiLayerNetModel {
+
+	/**
+	 * The serial version of the class, fixed so stored models can still be read after the class changes.
+	 */
+	private static final long serialVersionUID = 2806958112627107350L;
+
+	/**
+	 * The parameter arrays of each layer, by their names.
+	 */
+	private List<Map<String, QuantizedArray>> layers = new ArrayList<Map<String, QuantizedArray>>();
+
+	/**
+	 * The scale of the inputs of each layer, null if the network is not scored with integer kernels.
+	 */
+	private float[] inputScales = null;
+
+	/**
+	 * The memory the parameters of the network took before the quantization, in bytes.
+	 */
+	private long originalBytes = 0;
+
+	/**
+	 * The scorer with integer kernels, created on its first use.
+	 */
+	private transient QuantizedScorer quantizedScorer;
+
+	private QuantizedNetModel(MultiLayerNetModel source){
+		super(source.getTrainingHeader());
+	}
+
+	/**
+	 * Quantize the weights of a trained model.
+	 *
+	 * @param source the trained model, which is not changed
+	 * @param calibration the examples the scales of the inputs of the layers are calibrated on
+	 * @param perChannel true for one scale per output unit or filter, false for one scale per weight array
+	 * @return the quantized model
+	 * @throws OperatorException if the model has not been trained or the examples do not fit the model
+	 */
+	public static QuantizedNetModel quantize(MultiLayerNetModel source, ExampleSet calibration, boolean perChannel)
+			throws OperatorException{
+
+		MultiLayerNetwork network = source.getModel();
+		if (network == null){
+			throw new OperatorException("The model has not been trained.");
+		}
+
+		QuantizedNetModel quantized = new QuantizedNetModel(source);
+
+		Precision.enter(source.getPrecision());
+		try {
+			source.copySettings(quantized);
+
+			int width = source.getPrecision() == DataBuffer.Type.FLOAT ? 4 : 8;
+			quantized.originalBytes = (long) network.numParams() * width;
+
+			for (int i=0; i<network.getnLayers(); i++){
+				quantized.layers.add(quantizeLayer(network.getLayer(i), perChannel));
+			}
+
+			if (DenseScorer.checkSupported(network) == null){
+				quantized.calibrate(source, network, calibration);
+			}
+		} finally {
+			Precision.leave();
+		}
+
+		return quantized;
+	}
+
+	/**
+	 * Quantize the weights of a layer, the other parameters are stored with floats.
+	 */
+	private static Map<String, QuantizedArray> quantizeLayer(Layer layer, boolean perChannel){
+
+		Map<String, QuantizedArray> result = new LinkedHashMap<String, QuantizedArray>();
+		Map<String, INDArray> parameters = layer.paramTable();
+		if (parameters == null){
+			return result;
+		}
+
+		// the channels are the columns of a weight matrix, and the filters of convolutional weights
+		int channelAxis = -1;
+		if (layer.getClass() == DenseLayer.class || layer.getClass() == OutputLayer.class || layer.getClass() == RBM.class){
+			channelAxis = 1;
+		} else if (layer.getClass() == ConvolutionLayer.class){
+			channelAxis = 0;
+		}
+
+		for (Map.Entry<String, INDArray> parameter : parameters.entrySet()){
+			if ("W".equals(parameter.getKey()) && channelAxis >= 0){
+				result.put(parameter.getKey(), new QuantizedArray(parameter.getValue(), channelAxis, perChannel));
+			} else {
+				result.put(parameter.getKey(), new QuantizedArray(parameter.getValue()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calibrate the scales of the inputs of the layers on the largest absolute inputs of each layer
+	 * when the examples are passed through the original network.
+	 */
+	private void calibrate(MultiLayerNetModel source, MultiLayerNetwork network, ExampleSet calibration) throws OperatorException{
+
+		ExampleSetConverter converter = new ExampleSetConverter(
+				ExampleSetConverter.resolveAttributes(calibration, featureNames), null);
+		INDArray features = converter.convertFeatures(ExampleSetConverter.resolveRows(calibration));
+		if (source.isNormalizingInput()){
+			ExampleSetConverter.normalize(features, source.getColumnMeans(), source.getColumnStds());
+		}
+
+		// the input of the network followed by the output of each layer
+		List<INDArray> activations = network.feedForward(features, false);
+
+		inputScales = new float[network.getnLayers()];
+		for (int l=0; l<inputScales.length; l++){
+			INDArray input = activations.get(l);
+			double largest = 0;
+			for (int k=0; k<input.length(); k++){
+				largest = Math.max(largest, Math.abs(input.getDouble(k)));
+			}
+			inputScales[l] = largest > 0 ? (float) (largest / QuantizedArray.RANGE) : 1;
+		}
+	}
+
+	/**
+	 * Retrieve whether the network is scored with integer kernels.
+	 * @return true if the network is scored with integer kernels, false if it is restored and scored with ND4J
+	 */
+	public boolean isIntegerScoring(){
+		return inputScales != null;
+	}
+
+	/**
+	 * Retrieve the memory the parameters of the network took before the quantization.
+	 * @return the number of bytes
+	 */
+	public long getOriginalBytes(){
+		return originalBytes;
+	}
+
+	/**
+	 * Retrieve the memory the quantized parameters of the network take.
+	 * @return the number of bytes of the quantized weights, their scales and the other parameters
+	 */
+	public long getQuantizedBytes(){
+		long bytes = 0;
+		for (Map<String, QuantizedArray> layer : layers){
+			for (QuantizedArray array : layer.values()){
+				bytes += array.getBytes();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Restore a network with floating point weights from the quantized weights, in the precision of the model.
+	 * A new network is restored with each call and not kept by the model.
+	 */
+	@Override
+	protected synchronized MultiLayerNetwork materialize(){
+
+		if (getConfiguration() == null || layers.isEmpty()){
+			return null;
+		}
+
+		Precision.enterUninterruptibly(getPrecision());
+		try {
+			MultiLayerNetwork network = new MultiLayerNetwork(getConfiguration().clone());
+			network.init();
+			for (int i=0; i<layers.size(); i++){
+				for (Map.Entry<String, QuantizedArray> parameter : layers.get(i).entrySet()){
+					network.getLayer(i).setParam(parameter.getKey(), parameter.getValue().dequantize());
+				}
+			}
+			return network;
+		} finally {
+			Precision.leave();
+		}
+	}
+
+	@Override
+	public boolean isJavaScoring(){
+		return isIntegerScoring() || super.isJavaScoring();
+	}
+
+	/**
+	 * Retrieve the scorer with integer kernels if the network is scored with them,
+	 * otherwise the plain Java scorer of the restored network.
+	 */
+	@Override
+	public synchronized DenseScorer getDenseScorer() throws OperatorException{
+
+		if (!isIntegerScoring()){
+			return super.getDenseScorer();
+		}
+
+		if (quantizedScorer == null){
+
+			int numLayers = layers.size();
+			int[] sizes = new int[numLayers + 1];
+			byte[][] weights = new byte[numLayers][];
+			float[][] weightScales = new float[numLayers][];
+			float[][] biases = new float[numLayers][];
+			int[] activations = new int[numLayers];
+
+			for (int l=0; l<numLayers; l++){
+				QuantizedArray w = layers.get(l).get("W");
+				QuantizedArray b = layers.get(l).get("b");
+				int[] shape = w.getShape();
+				sizes[l] = shape[0];
+				sizes[l + 1] = shape[1];
+				weights[l] = w.getValues();
+				weightScales[l] = w.getScales();
+				biases[l] = b.getFloats();
+				activations[l] = DenseScorer.getActivation(getConfiguration().getConf(l).getLayer().getActivationFunction());
+			}
+
+			float[] means = null;
+			float[] stds = null;
+			if (isNormalizingInput()){
+				means = new float[sizes[0]];
+				stds = new float[sizes[0]];
+				for (int i=0; i<sizes[0]; i++){
+					means[i] = (float) getColumnMeans().getDouble(i);
+					stds[i] = (float) getColumnStds().getDouble(i);
+				}
+			}
+
+			quantizedScorer = new QuantizedScorer(sizes, weights, weightScales, biases, activations, inputScales, means, stds);
+		}
+		return quantizedScorer;
+	}
+
+	@Override
+	public void update(ExampleSet exampleSet, int steps, boolean updateStatistics) throws OperatorException{
+		throw new OperatorException("A quantized model cannot be updated, update the original model and quantize it again.");
+	}
+
+	/**
+	 * Clone the model. The quantized arrays are never changed, thus they are shared with the clone.
+	 */
+	@Override
+	public QuantizedNetModel clone(){
+		QuantizedNetModel clone = new QuantizedNetModel(this);
+		Precision.enterUninterruptibly(getPrecision());
+		try {
+			copySettings(clone);
+		} finally {
+			Precision.leave();
+		}
+		clone.layers = new ArrayList<Map<String, QuantizedArray>>(layers);
+		clone.inputScales = inputScales;
+		clone.originalBytes = originalBytes;
+		return clone;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder result = new StringBuilder(super.toString());
+		result.append("\nQuantized to 8-bit integers: ").append(getQuantizedBytes()).append(" bytes instead of ")
+				.append(originalBytes).append(" bytes, scored with ")
+				.append(isIntegerScoring() ? "integer kernels" : "restored floating point weights").append(".\n");
+		return result.toString();
+	}
+}
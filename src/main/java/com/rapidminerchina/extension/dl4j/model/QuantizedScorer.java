@@ -0,0 +1,121 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+/**
+ * A scorer of a quantized network of dense layers and an output layer with integer kernels.
+ *
+ * The inputs of each layer are quantized to 8-bit integers with the scale calibrated for the layer,
+ * the dot products with the 8-bit weights are accumulated as integers and only the sum of each output unit
+ * is scaled back with the scale of its weights and of the inputs, before the bias and the activation are applied.
+ * The features are normalized before they are quantized, as the normalization is not folded into the
+ * quantized weights of the first layer.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+class QuantizedScorer extends DenseScorer {
+
+	/**
+	 * The quantized weights of each layer, the weights of each output unit contiguous.
+	 */
+	private final byte[][] weights;
+
+	/**
+	 * The scale of the weights of each output unit of each layer.
+	 */
+	private final float[][] weightScales;
+
+	/**
+	 * The scale of the inputs of each layer.
+	 */
+	private final float[] inputScales;
+
+	/**
+	 * The means the features are normalized with, null if they are not normalized.
+	 */
+	private final float[] means;
+
+	/**
+	 * The standard deviations the features are normalized with, null if they are not normalized.
+	 */
+	private final float[] stds;
+
+	/**
+	 * The arrays of a scoring thread, with the array of the quantized inputs of a layer.
+	 */
+	private static class QuantizedWorkspace extends Workspace {
+
+		private final byte[] inputs;
+
+		QuantizedWorkspace(int[] sizes){
+			super(sizes);
+			int largest = 0;
+			for (int l=0; l<sizes.length-1; l++){
+				largest = Math.max(largest, sizes[l]);
+			}
+			inputs = new byte[largest];
+		}
+	}
+
+	/**
+	 * Create a scorer of quantized layers.
+	 *
+	 * @param sizes the number of inputs of the network followed by the number of outputs of each layer
+	 * @param weights the quantized weights of each layer, the weights of each output unit contiguous
+	 * @param weightScales the scale of the weights of each output unit of each layer
+	 * @param biases the biases of each layer
+	 * @param activations the activation function of each layer, as index of {@link #ACTIVATION_NAMES}
+	 * @param inputScales the scale of the inputs of each layer
+	 * @param means the means the features are normalized with, null if they are not normalized
+	 * @param stds the standard deviations the features are normalized with, null if they are not normalized
+	 */
+	QuantizedScorer(int[] sizes, byte[][] weights, float[][] weightScales, float[][] biases, int[] activations,
+			float[] inputScales, float[] means, float[] stds){
+		super(sizes, null, biases, activations);
+		this.weights = weights;
+		this.weightScales = weightScales;
+		this.inputScales = inputScales;
+		this.means = means;
+		this.stds = stds;
+	}
+
+	@Override
+	public Workspace createWorkspace(){
+		return new QuantizedWorkspace(sizes);
+	}
+
+	@Override
+	protected void forward(int l, float[] x, int xOffset, float[] y, int yOffset, Workspace workspace){
+
+		byte[] q = ((QuantizedWorkspace) workspace).inputs;
+		byte[] w = weights[l];
+		float[] scales = weightScales[l];
+		float[] b = biases[l];
+		int inputs = sizes[l];
+		int outputs = sizes[l + 1];
+		int activation = activations[l];
+		float inputScale = inputScales[l];
+
+		// quantize the inputs of the layer
+		boolean normalize = l == 0 && means != null && stds != null;
+		for (int i=0; i<inputs; i++){
+			float value = normalize ? (x[xOffset + i] - means[i]) / stds[i] : x[xOffset + i];
+			int quantized = Math.round(value / inputScale);
+			q[i] = (byte) (quantized > QuantizedArray.RANGE ? QuantizedArray.RANGE
+					: (quantized < -QuantizedArray.RANGE ? -QuantizedArray.RANGE : quantized));
+		}
+
+		for (int j=0; j<outputs; j++){
+
+			int sum = 0;
+			int index = j * inputs;
+			for (int i=0; i<inputs; i++){
+				sum += w[index + i] * q[i];
+			}
+			y[yOffset + j] = activate(activation, sum * scales[j] * inputScale + b[j]);
+		}
+
+		if (activation == SOFTMAX){
+			softmax(y, yOffset, outputs);
+		}
+	}
+}
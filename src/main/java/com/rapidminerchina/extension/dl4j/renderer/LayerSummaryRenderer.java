@@ -0,0 +1,33 @@
+package com.rapidminerchina.extension.dl4j.renderer;
+
+import javax.swing.table.TableModel;
+
+import com.rapidminer.gui.renderer.AbstractTableModelTableRenderer;
+import com.rapidminer.operator.IOContainer;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
+
+/**
+ * A renderer showing the layers of a neural network model as a table of their summaries,
+ * see {@link com.rapidminerchina.extension.dl4j.model.LayerSummary}.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class LayerSummaryRenderer extends AbstractTableModelTableRenderer {
+
+	@Override
+	public String getName(){
+		return "Layers";
+	}
+
+	@Override
+	public TableModel getTableModel(Object renderable, IOContainer ioContainer, boolean isReporting){
+		MultiLayerNetModel model = (MultiLayerNetModel) renderable;
+		return new LayerSummaryTableModel(model.getLayerSummaries());
+	}
+
+	@Override
+	public boolean isSortable(){
+		return false;
+	}
+}
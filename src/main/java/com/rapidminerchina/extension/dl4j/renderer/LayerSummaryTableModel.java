@@ -0,0 +1,97 @@
+package com.rapidminerchina.extension.dl4j.renderer;
+
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import com.rapidminerchina.extension.dl4j.model.LayerSummary;
+
+/**
+ * A table model showing the summary of each layer of a network, one layer per row.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@SuppressWarnings("serial")
+public class LayerSummaryTableModel extends AbstractTableModel {
+
+	private static final String[] COLUMN_NAMES = new String[]{
+			"Layer"
+			,"Name"
+			,"Type"
+			,"Weights"
+			,"Parameters"
+			,"Norm"
+			,"Min"
+			,"Max"
+	};
+
+	private static final Class<?>[] COLUMN_CLASSES = new Class<?>[]{
+			Integer.class
+			,String.class
+			,String.class
+			,String.class
+			,Integer.class
+			,Double.class
+			,Double.class
+			,Double.class
+	};
+
+	/**
+	 * The summaries shown.
+	 */
+	private final List<LayerSummary> summaries;
+
+	/**
+	 * Show the summaries of the layers of a network.
+	 * @param summaries the summary of each layer
+	 */
+	public LayerSummaryTableModel(List<LayerSummary> summaries){
+		this.summaries = summaries;
+	}
+
+	@Override
+	public int getRowCount(){
+		return summaries.size();
+	}
+
+	@Override
+	public int getColumnCount(){
+		return COLUMN_NAMES.length;
+	}
+
+	@Override
+	public String getColumnName(int column){
+		return COLUMN_NAMES[column];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column){
+		return COLUMN_CLASSES[column];
+	}
+
+	@Override
+	public Object getValueAt(int row, int column){
+		LayerSummary summary = summaries.get(row);
+		switch (column){
+		case 0:
+			return summary.getIndex();
+		case 1:
+			return summary.getName();
+		case 2:
+			return summary.getType();
+		case 3:
+			return summary.getShapeText();
+		case 4:
+			return summary.getParameterCount();
+		case 5:
+			return summary.getNorm();
+		case 6:
+			return summary.getMin();
+		case 7:
+			return summary.getMax();
+		default:
+			return null;
+		}
+	}
+}
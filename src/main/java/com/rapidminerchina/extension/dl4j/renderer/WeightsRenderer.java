@@ -0,0 +1,198 @@
+package com.rapidminerchina.extension.dl4j.renderer;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.rapidminer.gui.renderer.AbstractTableModelTableRenderer;
+import com.rapidminer.operator.IOContainer;
+import com.rapidminerchina.extension.dl4j.model.LayerSummary;
+import com.rapidminerchina.extension.dl4j.model.MultiLayerNetModel;
+
+/**
+ * A renderer showing the weights and biases of a neural network model page by page.
+ *
+ * One parameter array of one layer is shown at a time, through a {@link WeightsTableModel}
+ * which only reads the cells of the current page, so opening the view of a network with wide layers
+ * neither copies its weights nor builds them into one large text.
+ * In reports, only the first page of the first parameter array is shown.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class WeightsRenderer extends AbstractTableModelTableRenderer {
+
+	/**
+	 * One parameter array of one layer, as shown in the selection of the arrays.
+	 */
+	private static class ParameterEntry {
+
+		private final String label;
+
+		private final INDArray array;
+
+		ParameterEntry(String label, INDArray array){
+			this.label = label;
+			this.array = array;
+		}
+
+		@Override
+		public String toString(){
+			return label;
+		}
+	}
+
+	@Override
+	public String getName(){
+		return "Weights";
+	}
+
+	@Override
+	public boolean isSortable(){
+		return false;
+	}
+
+	@Override
+	public boolean isAutoresize(){
+		return false;
+	}
+
+	/**
+	 * Collect the parameter arrays of all layers. The weights W of each layer come first,
+	 * followed by its other parameters, e.g. the biases b and the visible biases vb, in the order of its parameter table.
+	 */
+	private List<ParameterEntry> getEntries(MultiLayerNetModel model){
+
+		List<ParameterEntry> entries = new ArrayList<ParameterEntry>();
+		MultiLayerNetwork network = model.getModel();
+		if (network == null){
+			return entries;
+		}
+
+		List<String> names = model.getLayerNames();
+		for (int i=0; i<network.getnLayers(); i++){
+			Map<String, INDArray> table = network.getLayer(i).paramTable();
+			if (table == null){
+				continue;
+			}
+			String name = names != null && i < names.size() ? names.get(i) : "Layer " + i;
+			String type = LayerSummary.getTypeName(network.getLayer(i));
+			String prefix = "Layer " + i + ": " + name + " (" + type + ") - ";
+			if (table.containsKey(DefaultParamInitializer.WEIGHT_KEY)){
+				entries.add(new ParameterEntry(prefix + DefaultParamInitializer.WEIGHT_KEY, table.get(DefaultParamInitializer.WEIGHT_KEY)));
+			}
+			for (Map.Entry<String, INDArray> parameter : table.entrySet()){
+				if (!parameter.getKey().equals(DefaultParamInitializer.WEIGHT_KEY)){
+					entries.add(new ParameterEntry(prefix + parameter.getKey(), parameter.getValue()));
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Show the first parameter array, i.e. the weights of the first layer with parameters.
+	 */
+	@Override
+	public TableModel getTableModel(Object renderable, IOContainer ioContainer, boolean isReporting){
+		List<ParameterEntry> entries = getEntries((MultiLayerNetModel) renderable);
+		if (entries.isEmpty()){
+			return new DefaultTableModel();
+		}
+		return new WeightsTableModel(entries.get(0).array);
+	}
+
+	@Override
+	public Component getVisualizationComponent(Object renderable, IOContainer ioContainer){
+
+		final List<ParameterEntry> entries = getEntries((MultiLayerNetModel) renderable);
+
+		final JTable table = new JTable();
+		table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+		final JLabel pageLabel = new JLabel();
+		final JComboBox<ParameterEntry> selection = new JComboBox<ParameterEntry>(entries.toArray(new ParameterEntry[entries.size()]));
+
+		final JButton previousRows = new JButton("Previous rows");
+		final JButton nextRows = new JButton("Next rows");
+		final JButton previousColumns = new JButton("Previous columns");
+		final JButton nextColumns = new JButton("Next columns");
+
+		final ActionListener pageListener = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (!(table.getModel() instanceof WeightsTableModel)){
+					return;
+				}
+				WeightsTableModel model = (WeightsTableModel) table.getModel();
+				int rowPage = model.getRowPage();
+				int columnPage = model.getColumnPage();
+				if (e.getSource() == previousRows){
+					rowPage--;
+				} else if (e.getSource() == nextRows){
+					rowPage++;
+				} else if (e.getSource() == previousColumns){
+					columnPage--;
+				} else if (e.getSource() == nextColumns){
+					columnPage++;
+				}
+				model.setPage(rowPage, columnPage);
+				pageLabel.setText(model.getPageDescription());
+			}
+		};
+		previousRows.addActionListener(pageListener);
+		nextRows.addActionListener(pageListener);
+		previousColumns.addActionListener(pageListener);
+		nextColumns.addActionListener(pageListener);
+
+		ActionListener selectionListener = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				ParameterEntry entry = (ParameterEntry) selection.getSelectedItem();
+				if (entry == null){
+					table.setModel(new DefaultTableModel());
+					pageLabel.setText("The network has not been trained.");
+					return;
+				}
+				WeightsTableModel model = new WeightsTableModel(entry.array);
+				table.setModel(model);
+				pageLabel.setText(model.getPageDescription());
+			}
+		};
+		selection.addActionListener(selectionListener);
+
+		JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		controls.add(selection);
+		controls.add(previousRows);
+		controls.add(nextRows);
+		controls.add(previousColumns);
+		controls.add(nextColumns);
+		controls.add(pageLabel);
+
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.add(controls, BorderLayout.NORTH);
+		panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+		// show the first page of the first array
+		selectionListener.actionPerformed(null);
+
+		return panel;
+	}
+}
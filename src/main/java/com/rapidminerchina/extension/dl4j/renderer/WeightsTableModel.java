@@ -0,0 +1,202 @@
+package com.rapidminerchina.extension.dl4j.renderer;
+
+import javax.swing.table.AbstractTableModel;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * A table model showing one page of a weight array of a network.
+ *
+ * The array is shown as a matrix with one row per entry of its first dimension, e.g. per input of a dense layer
+ * or per filter of a convolutional layer, and the remaining dimensions flattened into the columns.
+ * Only the cells of the current page are read from the array, on demand and without copying it,
+ * so even the weights of very wide layers are shown without building them into one table or text.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@SuppressWarnings("serial")
+public class WeightsTableModel extends AbstractTableModel {
+
+	/**
+	 * The default number of rows of a page.
+	 */
+	public static final int DEFAULT_PAGE_ROWS = 100;
+
+	/**
+	 * The default number of columns of a page.
+	 */
+	public static final int DEFAULT_PAGE_COLUMNS = 50;
+
+	/**
+	 * The array shown.
+	 */
+	private final INDArray array;
+
+	/**
+	 * The shape of the array.
+	 */
+	private final int[] shape;
+
+	/**
+	 * The number of rows of the whole matrix.
+	 */
+	private final int rows;
+
+	/**
+	 * The number of columns of the whole matrix.
+	 */
+	private final int columns;
+
+	/**
+	 * The number of rows of a page.
+	 */
+	private final int pageRows;
+
+	/**
+	 * The number of columns of a page.
+	 */
+	private final int pageColumns;
+
+	/**
+	 * The index of the current page of the rows.
+	 */
+	private int rowPage = 0;
+
+	/**
+	 * The index of the current page of the columns.
+	 */
+	private int columnPage = 0;
+
+	/**
+	 * Show an array with pages of the default size.
+	 * @param array the weights to show
+	 */
+	public WeightsTableModel(INDArray array){
+		this(array, DEFAULT_PAGE_ROWS, DEFAULT_PAGE_COLUMNS);
+	}
+
+	/**
+	 * Show an array page by page.
+	 * @param array the weights to show
+	 * @param pageRows the number of rows of a page
+	 * @param pageColumns the number of columns of a page
+	 */
+	public WeightsTableModel(INDArray array, int pageRows, int pageColumns){
+		this.array = array;
+		this.shape = array.shape();
+		this.rows = shape.length < 2 ? 1 : shape[0];
+		this.columns = rows == 0 ? 0 : array.length() / rows;
+		this.pageRows = Math.max(pageRows, 1);
+		this.pageColumns = Math.max(pageColumns, 1);
+	}
+
+	/**
+	 * Retrieve the number of pages of the rows.
+	 * @return the number of pages, at least 1
+	 */
+	public int getRowPages(){
+		return Math.max((rows + pageRows - 1) / pageRows, 1);
+	}
+
+	/**
+	 * Retrieve the number of pages of the columns.
+	 * @return the number of pages, at least 1
+	 */
+	public int getColumnPages(){
+		return Math.max((columns + pageColumns - 1) / pageColumns, 1);
+	}
+
+	/**
+	 * Retrieve the index of the current page of the rows.
+	 * @return the index, starting with 0
+	 */
+	public int getRowPage(){
+		return rowPage;
+	}
+
+	/**
+	 * Retrieve the index of the current page of the columns.
+	 * @return the index, starting with 0
+	 */
+	public int getColumnPage(){
+		return columnPage;
+	}
+
+	/**
+	 * Specify the page shown. Indices out of range are moved to the first or last page.
+	 * @param rowPage the index of the page of the rows
+	 * @param columnPage the index of the page of the columns
+	 */
+	public void setPage(int rowPage, int columnPage){
+		this.rowPage = Math.min(Math.max(rowPage, 0), getRowPages() - 1);
+		this.columnPage = Math.min(Math.max(columnPage, 0), getColumnPages() - 1);
+		fireTableStructureChanged();
+	}
+
+	/**
+	 * Retrieve the description of the whole array and the part of it shown.
+	 * @return the description, e.g. &quot;rows 1-100 of 4096, columns 1-50 of 4096&quot;
+	 */
+	public String getPageDescription(){
+		int firstRow = rowPage * pageRows;
+		int firstColumn = columnPage * pageColumns;
+		return "rows " + (firstRow + 1) + "-" + (firstRow + getRowCount()) + " of " + rows
+				+ ", columns " + (firstColumn + 1) + "-" + (firstColumn + getColumnCount() - 1) + " of " + columns;
+	}
+
+	@Override
+	public int getRowCount(){
+		return Math.max(Math.min(pageRows, rows - rowPage * pageRows), 0);
+	}
+
+	@Override
+	public int getColumnCount(){
+		// the first column shows the index of the row
+		return 1 + Math.max(Math.min(pageColumns, columns - columnPage * pageColumns), 0);
+	}
+
+	@Override
+	public String getColumnName(int column){
+		if (column == 0){
+			return "Row";
+		}
+		return String.valueOf(columnPage * pageColumns + column);
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column){
+		return column == 0 ? Integer.class : Double.class;
+	}
+
+	@Override
+	public Object getValueAt(int row, int column){
+		int matrixRow = rowPage * pageRows + row;
+		if (column == 0){
+			return matrixRow + 1;
+		}
+		return getValue(matrixRow, columnPage * pageColumns + column - 1);
+	}
+
+	/**
+	 * Read one value of the matrix from the array.
+	 */
+	private double getValue(int row, int column){
+
+		if (shape.length < 2){
+			return array.getDouble(column);
+		}
+		if (shape.length == 2){
+			return array.getDouble(row, column);
+		}
+
+		// the column is the flat index over the remaining dimensions
+		int[] indices = new int[shape.length];
+		indices[0] = row;
+		for (int d=shape.length-1; d>0; d--){
+			indices[d] = column % shape[d];
+			column /= shape[d];
+		}
+		return array.getDouble(indices);
+	}
+}
@@ -14,6 +14,7 @@ import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.example.ExampleSetFactory;
@@ -29,6 +30,7 @@ import com.rapidminer.parameter.ParameterTypeFile;
 import com.rapidminer.parameter.ParameterTypeInt;
 import com.rapidminer.parameter.ParameterTypeString;
 import com.rapidminer.parameter.conditions.BooleanParameterCondition;
+import com.rapidminerchina.extension.dl4j.data.Precision;
 
 public class Word2VecLearner extends Operator {
 
@@ -202,49 +204,59 @@ public class Word2VecLearner extends Operator {
 			e.printStackTrace();
 		}
 		
-	    TokenizerFactory token = new DefaultTokenizerFactory();
-	    token.setTokenPreProcessor(new CommonPreprocessor());
-	    InMemoryLookupCache cache = new InMemoryLookupCache();
-	    WeightLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>()
-                .vectorLength(vectorLength)
-                .useAdaGrad(adaGrad)
-                .cache(cache)
-                .lr(lr)
-                .build();
+		// the lookup table and the word vectors are created in the default precision of the extension
+		DataBuffer.Type precision = Precision.getDefault();
+		int numColumns = vectorLength + 1;
+		Word2Vec vec;
+		Object[][] data;
+		
+		Precision.enter(precision, this);
+		try {
+		    TokenizerFactory token = new DefaultTokenizerFactory();
+		    token.setTokenPreProcessor(new CommonPreprocessor());
+		    InMemoryLookupCache cache = new InMemoryLookupCache();
+		    WeightLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>()
+	                .vectorLength(vectorLength)
+	                .useAdaGrad(adaGrad)
+	                .cache(cache)
+	                .lr(lr)
+	                .build();
 	    
-        Word2Vec vec = new Word2Vec.Builder()
-                .minWordFrequency(minWordFrequency)
-                .iterations(numIteration)
-                .layerSize(vectorLength)
-                .lookupTable(table)
-                .epochs(1)
-                .stopWords(stopWordsList)
-                .vocabCache(cache)
-                .seed(seed)
-                .windowSize(windowSize)
-                .iterate(iterator)
-                .tokenizerFactory(token)
-                .build();
+	        vec = new Word2Vec.Builder()
+	                .minWordFrequency(minWordFrequency)
+	                .iterations(numIteration)
+	                .layerSize(vectorLength)
+	                .lookupTable(table)
+	                .epochs(1)
+	                .stopWords(stopWordsList)
+	                .vocabCache(cache)
+	                .seed(seed)
+	                .windowSize(windowSize)
+	                .iterate(iterator)
+	                .tokenizerFactory(token)
+	                .build();
         
-        vec.fit();
+	        vec.fit();
         
-        // construct the matrix for the example set
-        int numRows = vec.vocab().numWords();
-        int numColumns = vectorLength + 1;
+	        // construct the matrix for the example set
+	        int numRows = vec.vocab().numWords();
         
-        Object[][] data = new Object[numRows][numColumns];
-        int rowIndex = 0;
+	        data = new Object[numRows][numColumns];
+	        int rowIndex = 0;
         
-        // for each word in the vocabulary, combine the word with its numerical vector in one row
-        Collection<String> words = vec.vocab().words();
-        for (String word : words){
-        	data[rowIndex][0] = word;
-        	double[] wordVector = vec.getWordVector(word);
-        	for(int j=1; j<numColumns; j++){
-            	data[rowIndex][j] = wordVector[j-1];
-        	}
-        	rowIndex ++;
-        }
+	        // for each word in the vocabulary, combine the word with its numerical vector in one row
+	        Collection<String> words = vec.vocab().words();
+	        for (String word : words){
+	        	data[rowIndex][0] = word;
+	        	double[] wordVector = vec.getWordVector(word);
+	        	for(int j=1; j<numColumns; j++){
+	            	data[rowIndex][j] = wordVector[j-1];
+	        	}
+	        	rowIndex ++;
+	        }
+		} finally {
+			Precision.leave();
+		}
         
         ExampleSet resultVector = ExampleSetFactory.createExampleSet(data);
         
@@ -260,6 +272,7 @@ public class Word2VecLearner extends Operator {
         
         Word2VecModel resultModel = new Word2VecModel(ExampleSetFactory.createExampleSet(new double [1][1]));
         resultModel.setModel(vec);
+        resultModel.setPrecision(precision);
         resultModel.setResultTable(resultVector);
         
         model.deliver(resultModel);
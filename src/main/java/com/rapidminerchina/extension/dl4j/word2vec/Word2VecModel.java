@@ -1,6 +1,7 @@
 package com.rapidminerchina.extension.dl4j.word2vec;
 
 import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 
 import com.rapidminer.example.ExampleSet;
 import com.rapidminer.operator.AbstractModel;
@@ -11,6 +12,9 @@ public class Word2VecModel extends AbstractModel {
 	private Word2Vec vec;
 	private ExampleSet resultTable;
 	
+	// the data type the word vectors were trained in, to be entered through Precision before using the model
+	private DataBuffer.Type precision = null;
+	
 	protected Word2VecModel(ExampleSet exampleSet) {
 		super(exampleSet);
 		// TODO Auto-generated constructor stub
@@ -31,6 +35,14 @@ public class Word2VecModel extends AbstractModel {
 	public ExampleSet getResult(){
 		return this.resultTable;
 	}
+	
+	public void setPrecision(DataBuffer.Type precision){
+		this.precision = precision;
+	}
+	
+	public DataBuffer.Type getPrecision(){
+		return this.precision;
+	}
 
 	@Override
 	public ExampleSet apply(ExampleSet testSet) throws OperatorException {
@@ -0,0 +1,63 @@
+package com.rapidminerchina.extension.dl4j;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * Checks {@link DL4JConvert#getMax(INDArray)} against Nd4j.argMax on arrays and on views with an offset or strides.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class DL4JConvertTest {
+
+	private static int[] argMax(INDArray array){
+		INDArray indices = Nd4j.argMax(array, 1);
+		int[] result = new int[array.rows()];
+		for (int i=0; i<result.length; i++){
+			result[i] = (int) indices.getDouble(i);
+		}
+		return result;
+	}
+
+	private static void assertSameMax(INDArray array){
+		assertArrayEquals(argMax(array), DL4JConvert.getMax(array));
+	}
+
+	@Test
+	public void testArray(){
+		assertSameMax(Nd4j.rand(20, 7, 1992));
+	}
+
+	@Test
+	public void testFortranOrder(){
+		assertSameMax(Nd4j.rand(20, 7, 1992).dup('f'));
+	}
+
+	@Test
+	public void testOffsetView(){
+		INDArray array = Nd4j.rand(20, 7, 1992);
+		assertSameMax(array.get(NDArrayIndex.interval(5, 15), NDArrayIndex.interval(2, 7)));
+	}
+
+	@Test
+	public void testTransposedView(){
+		assertSameMax(Nd4j.rand(7, 20, 1992).transpose());
+	}
+
+	@Test
+	public void testRowView(){
+		INDArray array = Nd4j.rand(20, 7, 1992);
+		assertSameMax(array.getRow(3));
+	}
+
+	@Test
+	public void testFirstOfTies(){
+		INDArray array = Nd4j.create(new double[][]{{1, 3, 3}, {2, 2, 2}, {0, 0, 1}});
+		assertArrayEquals(new int[]{1, 0, 2}, DL4JConvert.getMax(array));
+	}
+}
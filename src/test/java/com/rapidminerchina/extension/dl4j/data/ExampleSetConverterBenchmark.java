@@ -0,0 +1,89 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rapidminer.example.Attribute;
+import com.rapidminer.example.Attributes;
+import com.rapidminer.example.Example;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.ExampleSetFactory;
+
+/**
+ * Compares the conversion of an exampleset by {@link ExampleSetConverter} with the conversion of 0.3.1,
+ * which looked up each attribute by its name for each cell and copied the values through a double[][].
+ *
+ * Run with gradle benchmark -Pinclude=ExampleSetConverterBenchmark.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExampleSetConverterBenchmark {
+
+	@Param({"10000"})
+	public int examples;
+
+	@Param({"10", "100"})
+	public int attributes;
+
+	private ExampleSet exampleSet;
+
+	@Setup
+	public void setUp(){
+		Random random = new Random(1992);
+		double[][] data = new double[examples][attributes];
+		for (int r=0; r<examples; r++){
+			for (int c=0; c<attributes; c++){
+				data[r][c] = random.nextGaussian();
+			}
+		}
+		exampleSet = ExampleSetFactory.createExampleSet(data);
+	}
+
+	@Benchmark
+	public INDArray convertByName(){
+
+		Attributes attributes = exampleSet.getAttributes();
+		List<String> featureNames = new ArrayList<String>();
+		for (Attribute attribute : attributes){
+			featureNames.add(attribute.getName());
+		}
+
+		double[][] featuresMatrix = new double[exampleSet.size()][featureNames.size()];
+		int counter = 0;
+		for (Example e : exampleSet){
+			for (int i=0; i<featureNames.size(); i++){
+				featuresMatrix[counter][i] = e.getValue(attributes.get(featureNames.get(i)));
+			}
+			counter++;
+		}
+		return Nd4j.create(featuresMatrix);
+	}
+
+	@Benchmark
+	public INDArray convert(){
+		return new ExampleSetConverter(exampleSet, false).convertFeatures(exampleSet);
+	}
+}
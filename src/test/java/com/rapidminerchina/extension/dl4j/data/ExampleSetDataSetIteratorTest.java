@@ -0,0 +1,76 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the order the iterator visits the examples in when they are shuffled:
+ * each epoch visits every example exactly once, and the orders of the epochs are the same for the same seed.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class ExampleSetDataSetIteratorTest {
+
+	private static final int EXAMPLES = 1000;
+
+	private static final int EPOCHS = 5;
+
+	/**
+	 * Draw the orders of a number of epochs, as the iterator does on each reset.
+	 */
+	private static int[][] drawEpochs(long seed){
+		Random random = new Random(seed);
+		int[][] orders = new int[EPOCHS][];
+		for (int epoch=0; epoch<EPOCHS; epoch++){
+			orders[epoch] = ExampleSetDataSetIterator.createPermutation(EXAMPLES, random);
+		}
+		return orders;
+	}
+
+	@Test
+	public void testPermutation(){
+		for (int[] order : drawEpochs(1992)){
+			assertEquals(EXAMPLES, order.length);
+			boolean[] visited = new boolean[EXAMPLES];
+			for (int index : order){
+				assertFalse("example " + index + " is visited twice", visited[index]);
+				visited[index] = true;
+			}
+		}
+	}
+
+	@Test
+	public void testReproducible(){
+		int[][] first = drawEpochs(1992);
+		int[][] second = drawEpochs(1992);
+		for (int epoch=0; epoch<EPOCHS; epoch++){
+			assertArrayEquals("order of epoch " + epoch, first[epoch], second[epoch]);
+		}
+	}
+
+	@Test
+	public void testEpochsDiffer(){
+		int[][] orders = drawEpochs(1992);
+		for (int epoch=1; epoch<EPOCHS; epoch++){
+			assertFalse("order of epoch " + epoch, Arrays.equals(orders[epoch - 1], orders[epoch]));
+		}
+		assertFalse(Arrays.equals(orders[0], drawEpochs(2016)[0]));
+	}
+
+	@Test
+	public void testSmallSizes(){
+		assertEquals(0, ExampleSetDataSetIterator.createPermutation(0, new Random(1992)).length);
+		assertArrayEquals(new int[]{0}, ExampleSetDataSetIterator.createPermutation(1, new Random(1992)));
+
+		int[] order = ExampleSetDataSetIterator.createPermutation(2, new Random(1992));
+		assertTrue(Arrays.equals(new int[]{0, 1}, order) || Arrays.equals(new int[]{1, 0}, order));
+	}
+}
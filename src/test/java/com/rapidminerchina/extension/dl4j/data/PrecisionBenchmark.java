@@ -0,0 +1,157 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rapidminerchina.extension.dl4j.DL4JConvert;
+
+/**
+ * Compares training and scoring in double and in single precision.
+ *
+ * The throughput is measured for one step of training on a batch of examples and for scoring the batch.
+ * The accuracy is reported at the end of each trial: a new network is trained for a fixed number of steps
+ * in the precision of the trial and its accuracy on held-out examples is printed, so both precisions
+ * can be compared for the same seed.
+ *
+ * Run with gradle benchmark -Pinclude=PrecisionBenchmark.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrecisionBenchmark {
+
+	private static final int EXAMPLES = 2000;
+
+	private static final int FEATURES = 50;
+
+	private static final int CLASSES = 5;
+
+	private static final int ACCURACY_STEPS = 100;
+
+	@Param({"double", "float"})
+	public String precision;
+
+	private DataSet training;
+
+	private DataSet test;
+
+	private MultiLayerNetwork network;
+
+	/**
+	 * Create examples whose class is the index of the largest of the first features.
+	 */
+	private static DataSet createExamples(int count, int seed){
+		INDArray features = Nd4j.randn(count, FEATURES, seed);
+		INDArray labels = Nd4j.zeros(count, CLASSES);
+		int[] classes = DL4JConvert.getMax(features.get(NDArrayIndex.all(), NDArrayIndex.interval(0, CLASSES)));
+		for (int r=0; r<count; r++){
+			labels.putScalar(new int[]{r, classes[r]}, 1);
+		}
+		return new DataSet(features, labels);
+	}
+
+	private static MultiLayerNetwork createNetwork(){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+				.iterations(1)
+				.learningRate(0.1)
+				.list(3)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(FEATURES)
+						.nOut(100)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new DenseLayer.Builder()
+						.nIn(100)
+						.nOut(100)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(2, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(100)
+						.nOut(CLASSES)
+						.activation("softmax")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.backprop(true)
+				.pretrain(false)
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		return network;
+	}
+
+	@Setup
+	public void setUp() throws Exception{
+		Precision.enter(Precision.getType(precision));
+		training = createExamples(EXAMPLES, 1992);
+		test = createExamples(EXAMPLES, 2016);
+		network = createNetwork();
+	}
+
+	@TearDown
+	public void tearDown(){
+		try {
+			MultiLayerNetwork trained = createNetwork();
+			for (int i=0; i<ACCURACY_STEPS; i++){
+				trained.fit(training);
+			}
+			int[] predicted = DL4JConvert.getMax(trained.output(test.getFeatures()));
+			int[] actual = DL4JConvert.getMax(test.getLabels());
+			int correct = 0;
+			for (int r=0; r<actual.length; r++){
+				if (predicted[r] == actual[r]){
+					correct++;
+				}
+			}
+			System.out.println();
+			System.out.println("Accuracy in " + precision + " precision after " + ACCURACY_STEPS + " steps: "
+					+ (double) correct / actual.length);
+		} finally {
+			Precision.leave();
+		}
+	}
+
+	@Benchmark
+	public MultiLayerNetwork fit(){
+		network.fit(training);
+		return network;
+	}
+
+	@Benchmark
+	public INDArray output(){
+		return network.output(test.getFeatures());
+	}
+}
@@ -0,0 +1,212 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.operator.ProcessStoppedException;
+
+/**
+ * Checks entering and leaving the precisions, and that a thread waiting for another precision can be stopped.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class PrecisionTest {
+
+	private static final long TIMEOUT = 10000;
+
+	/**
+	 * A thread that stays in a precision until it is released.
+	 */
+	private static class Holder extends Thread {
+
+		private final DataBuffer.Type type;
+
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		Holder(DataBuffer.Type type){
+			this.type = type;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				Precision.enter(type);
+			} catch (ProcessStoppedException e) {
+				return;
+			}
+			try {
+				entered.countDown();
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				Precision.leave();
+			}
+		}
+
+		void awaitEntered() throws InterruptedException{
+			assertTrue(entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		}
+
+		void release() throws InterruptedException{
+			release.countDown();
+			join(TIMEOUT);
+		}
+	}
+
+	/**
+	 * Wait until a thread blocks in the wait for the lock of the precisions.
+	 */
+	private static void awaitWaiting(Thread thread) throws InterruptedException{
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING){
+			assertTrue("the thread does not wait", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testEnterAndLeave() throws Exception{
+		DataBuffer.Type before = Nd4j.dataType();
+
+		Precision.enter(DataBuffer.Type.DOUBLE);
+		try {
+			assertEquals(DataBuffer.Type.DOUBLE, Nd4j.dataType());
+			Precision.enter(DataBuffer.Type.DOUBLE);
+			Precision.leave();
+			assertEquals(DataBuffer.Type.DOUBLE, Nd4j.dataType());
+			assertFalse(Precision.canEnter(DataBuffer.Type.FLOAT));
+		} finally {
+			Precision.leave();
+		}
+
+		assertEquals(before, Nd4j.dataType());
+		assertTrue(Precision.canEnter(DataBuffer.Type.FLOAT));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOtherPrecisionOnSameThread() throws Exception{
+		Precision.enter(DataBuffer.Type.DOUBLE);
+		try {
+			Precision.enter(DataBuffer.Type.FLOAT);
+		} finally {
+			Precision.leave();
+		}
+	}
+
+	@Test
+	public void testInterruptStopsWait() throws Exception{
+
+		Holder holder = new Holder(DataBuffer.Type.FLOAT);
+		holder.start();
+		holder.awaitEntered();
+
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		Thread waiting = new Thread(){
+
+			@Override
+			public void run() {
+				try {
+					Precision.enter(DataBuffer.Type.DOUBLE);
+					Precision.leave();
+					result.set("entered");
+				} catch (ProcessStoppedException e) {
+					result.set(Thread.currentThread().isInterrupted() ? e : "not interrupted");
+				}
+			}
+		};
+		waiting.start();
+		awaitWaiting(waiting);
+		waiting.interrupt();
+		waiting.join(TIMEOUT);
+
+		try {
+			assertTrue("result: " + result.get(), result.get() instanceof ProcessStoppedException);
+		} finally {
+			holder.release();
+		}
+	}
+
+	@Test
+	public void testUninterruptibleWaitKeepsInterrupt() throws Exception{
+
+		Holder holder = new Holder(DataBuffer.Type.FLOAT);
+		holder.start();
+		holder.awaitEntered();
+
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		Thread waiting = new Thread(){
+
+			@Override
+			public void run() {
+				Precision.enterUninterruptibly(DataBuffer.Type.DOUBLE);
+				try {
+					result.set(Nd4j.dataType() + " " + Thread.currentThread().isInterrupted());
+				} finally {
+					Precision.leave();
+				}
+			}
+		};
+		waiting.start();
+		awaitWaiting(waiting);
+		waiting.interrupt();
+
+		// still waiting for the other precision to be left
+		Thread.sleep(100);
+		assertEquals(null, result.get());
+
+		holder.release();
+		waiting.join(TIMEOUT);
+		assertEquals(DataBuffer.Type.DOUBLE + " true", result.get());
+	}
+
+	@Test
+	public void testWaitForOtherPrecision() throws Exception{
+
+		Holder holder = new Holder(DataBuffer.Type.FLOAT);
+		holder.start();
+		holder.awaitEntered();
+
+		final AtomicReference<DataBuffer.Type> result = new AtomicReference<DataBuffer.Type>();
+		Thread waiting = new Thread(){
+
+			@Override
+			public void run() {
+				try {
+					Precision.enter(DataBuffer.Type.DOUBLE);
+				} catch (ProcessStoppedException e) {
+					return;
+				}
+				try {
+					result.set(Nd4j.dataType());
+				} finally {
+					Precision.leave();
+				}
+			}
+		};
+		waiting.start();
+		awaitWaiting(waiting);
+		assertEquals(null, result.get());
+
+		holder.release();
+		waiting.join(TIMEOUT);
+		if (waiting.isAlive()){
+			fail("the thread still waits after the other precision was left");
+		}
+		assertEquals(DataBuffer.Type.DOUBLE, result.get());
+	}
+}
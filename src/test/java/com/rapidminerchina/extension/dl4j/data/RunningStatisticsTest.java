@@ -0,0 +1,145 @@
+package com.rapidminerchina.extension.dl4j.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Checks the running statistics against the two-pass mean and sample standard deviation,
+ * for rows added one by one, for statistics continued after a copy, and for merged statistics.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class RunningStatisticsTest {
+
+	private static final int COLUMNS = 4;
+
+	private static final double TOLERANCE = 1e-9;
+
+	/**
+	 * The statistics are read as ND4J arrays, which keep all digits only in double precision.
+	 */
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(DataBuffer.Type.DOUBLE);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	/**
+	 * Create rows whose means are large compared to their standard deviations.
+	 */
+	private static double[][] createRows(int count, long seed){
+		Random random = new Random(seed);
+		double[][] rows = new double[count][COLUMNS];
+		for (int r=0; r<count; r++){
+			for (int i=0; i<COLUMNS; i++){
+				rows[r][i] = 1e6 * (i + 1) + random.nextGaussian() * (i + 1);
+			}
+		}
+		return rows;
+	}
+
+	private static double[][] concat(double[][] first, double[][] second){
+		double[][] rows = new double[first.length + second.length][];
+		System.arraycopy(first, 0, rows, 0, first.length);
+		System.arraycopy(second, 0, rows, first.length, second.length);
+		return rows;
+	}
+
+	private static RunningStatistics accumulate(double[][] rows){
+		RunningStatistics statistics = new RunningStatistics(COLUMNS);
+		for (double[] row : rows){
+			statistics.add(row);
+		}
+		return statistics;
+	}
+
+	private static void assertTwoPass(double[][] rows, RunningStatistics statistics){
+
+		assertEquals(rows.length, statistics.getCount());
+
+		INDArray means = statistics.getMeans();
+		INDArray stds = statistics.getStandardDeviations(0);
+		for (int i=0; i<COLUMNS; i++){
+
+			double mean = 0;
+			for (double[] row : rows){
+				mean += row[i];
+			}
+			mean /= rows.length;
+
+			double sum = 0;
+			for (double[] row : rows){
+				sum += (row[i] - mean) * (row[i] - mean);
+			}
+			double std = Math.sqrt(sum / Math.max(rows.length - 1, 1));
+
+			assertEquals("mean of column " + i, 1, means.getDouble(i) / mean, TOLERANCE);
+			assertEquals("standard deviation of column " + i, 1, stds.getDouble(i) / std, TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testAdd(){
+		double[][] rows = createRows(1000, 1992);
+		assertTwoPass(rows, accumulate(rows));
+	}
+
+	@Test
+	public void testSingleRow(){
+		RunningStatistics statistics = accumulate(new double[][]{{1, 2, 3, 4}});
+		assertEquals(1, statistics.getCount());
+		assertEquals(3, statistics.getMeans().getDouble(2), 0);
+		assertEquals(0, statistics.getStandardDeviations(0).getDouble(2), 0);
+		assertEquals(0.5, statistics.getStandardDeviations(0.5).getDouble(2), 0);
+	}
+
+	@Test
+	public void testContinueCopy(){
+		double[][] first = createRows(700, 1992);
+		double[][] second = createRows(300, 2016);
+
+		RunningStatistics original = accumulate(first);
+		RunningStatistics copy = new RunningStatistics(original);
+		for (double[] row : second){
+			copy.add(row);
+		}
+
+		assertTwoPass(concat(first, second), copy);
+		assertTwoPass(first, original);
+	}
+
+	@Test
+	public void testMerge(){
+		double[][] first = createRows(700, 1992);
+		double[][] second = createRows(300, 2016);
+
+		RunningStatistics merged = accumulate(first);
+		merged.merge(accumulate(second));
+		assertTwoPass(concat(first, second), merged);
+	}
+
+	@Test
+	public void testMergeEmpty(){
+		double[][] rows = createRows(10, 1992);
+
+		RunningStatistics statistics = accumulate(rows);
+		statistics.merge(new RunningStatistics(COLUMNS));
+		assertTwoPass(rows, statistics);
+
+		RunningStatistics empty = new RunningStatistics(COLUMNS);
+		empty.merge(accumulate(rows));
+		assertTwoPass(rows, empty);
+	}
+}
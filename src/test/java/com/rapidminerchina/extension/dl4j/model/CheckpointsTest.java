@@ -0,0 +1,96 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+/**
+ * Checks that the latest checkpoint is read back, and that no checkpoint is left to resume from
+ * once a training has finished.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class CheckpointsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Create a network trained on one batch, as the updater of a network only exists once it has been fitted.
+	 */
+	private static MultiLayerNetwork createNetwork(){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(2)
+				.layer(0, new DenseLayer.Builder().nIn(3).nOut(4).activation("tanh").build())
+				.layer(1, new OutputLayer.Builder(LossFunction.MCXENT).nIn(4).nOut(2).activation("softmax").build())
+				.backprop(true)
+				.pretrain(false)
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		network.fit(new DataSet(Nd4j.rand(10, 3, 1992), Nd4j.create(new double[][]{
+				{1, 0}, {0, 1}, {1, 0}, {0, 1}, {1, 0}, {0, 1}, {1, 0}, {0, 1}, {1, 0}, {0, 1}})));
+		return network;
+	}
+
+	@Test
+	public void testLatestCheckpoint() throws IOException{
+
+		File directory = new File(folder.getRoot(), "checkpoints");
+		MultiLayerNetwork network = createNetwork();
+
+		Checkpoints checkpoints = new Checkpoints(directory);
+		checkpoints.save(0, createNetwork());
+		checkpoints.save(1, network);
+		checkpoints.close();
+
+		Checkpoints.Checkpoint checkpoint = new Checkpoints(directory).load();
+		assertNotNull(checkpoint);
+		assertEquals(1, checkpoint.epoch);
+		assertNotNull(checkpoint.updater);
+		assertEquals(0, Transforms.abs(checkpoint.parameters.sub(network.params()), false).maxNumber().doubleValue(), 0);
+	}
+
+	@Test
+	public void testNoCheckpoint() throws IOException{
+		assertNull(new Checkpoints(folder.getRoot()).load());
+	}
+
+	@Test
+	public void testResumeAfterFinishedTraining() throws IOException{
+
+		File directory = folder.getRoot();
+		MultiLayerNetwork network = createNetwork();
+
+		// a finished training writes the checkpoint of its last epoch and deletes it at the end
+		Checkpoints checkpoints = new Checkpoints(directory);
+		checkpoints.save(0, network);
+		checkpoints.save(1, network);
+		checkpoints.delete();
+
+		assertFalse(new File(directory, "checkpoint.bin").exists());
+		assertFalse(new File(directory, "checkpoint.bin.tmp").exists());
+
+		// so the next training in the same directory starts from scratch
+		assertNull(new Checkpoints(directory).load());
+	}
+}
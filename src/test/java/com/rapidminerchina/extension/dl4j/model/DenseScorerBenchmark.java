@@ -0,0 +1,118 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rapidminer.operator.OperatorException;
+
+/**
+ * Compares the latency of scoring a batch of examples with the scorer in plain Java
+ * and with the network in ND4J, for a small network of dense layers and batches of 1, 16 and 256 examples.
+ *
+ * Both take the features as they are prepared for them, a float array for the scorer and a matrix for ND4J,
+ * so only the scoring itself is measured.
+ *
+ * Run with gradle benchmark -Pinclude=DenseScorerBenchmark.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DenseScorerBenchmark {
+
+	private static final int FEATURES = 50;
+
+	private static final int CLASSES = 5;
+
+	@Param({"1", "16", "256"})
+	public int batchSize;
+
+	private MultiLayerNetwork network;
+
+	private INDArray features;
+
+	private DenseScorer scorer;
+
+	private DenseScorer.Workspace workspace;
+
+	private float[] inputs;
+
+	private float[] outputs;
+
+	@Setup
+	public void setUp() throws OperatorException{
+
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(3)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(FEATURES)
+						.nOut(64)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new DenseLayer.Builder()
+						.nIn(64)
+						.nOut(32)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(2, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(32)
+						.nOut(CLASSES)
+						.activation("softmax")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.build();
+		network = new MultiLayerNetwork(configuration);
+		network.init();
+
+		features = Nd4j.randn(batchSize, FEATURES, 1992);
+		inputs = new float[batchSize * FEATURES];
+		for (int r=0; r<batchSize; r++){
+			for (int c=0; c<FEATURES; c++){
+				inputs[r * FEATURES + c] = features.getFloat(r, c);
+			}
+		}
+
+		scorer = DenseScorer.create(network, null, null);
+		workspace = scorer.createWorkspace();
+		outputs = new float[batchSize * CLASSES];
+	}
+
+	@Benchmark
+	public INDArray networkOutput(){
+		return network.output(features);
+	}
+
+	@Benchmark
+	public float[] denseScorer(){
+		scorer.score(inputs, batchSize, outputs, workspace);
+		return outputs;
+	}
+}
@@ -0,0 +1,210 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+
+import com.rapidminer.operator.OperatorException;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that the scorer in plain Java gives the same outputs as the network in ND4J,
+ * for each supported activation function in a hidden layer and in the output layer,
+ * with and without the normalization folded into the first layer, for networks of both precisions.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@RunWith(Parameterized.class)
+public class DenseScorerTest {
+
+	private static final int FEATURES = 5;
+
+	private static final int EXAMPLES = 50;
+
+	/**
+	 * The scorer computes in float, so its outputs differ from those of ND4J by the rounding of float.
+	 */
+	private static final double TOLERANCE = 1e-5;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> getPrecisions(){
+		return Arrays.asList(new Object[][]{
+				{"double"}
+				,{"float"}
+		});
+	}
+
+	private final DataBuffer.Type type;
+
+	public DenseScorerTest(String precision){
+		this.type = Precision.getType(precision);
+	}
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(type);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	static MultiLayerNetwork createNetwork(String hiddenActivation, String outputActivation, int outputs){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(3)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(FEATURES)
+						.nOut(8)
+						.activation(hiddenActivation)
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new DenseLayer.Builder()
+						.nIn(8)
+						.nOut(6)
+						.activation(hiddenActivation)
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(2, new OutputLayer.Builder(outputs == 1 ? LossFunction.MSE : LossFunction.MCXENT)
+						.nIn(6)
+						.nOut(outputs)
+						.activation(outputActivation)
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		return network;
+	}
+
+	/**
+	 * Score each example with the scorer one by one and as one batch, and compare both with the outputs of the network.
+	 */
+	private static void assertSameOutputs(DenseScorer scorer, INDArray features, INDArray expected){
+
+		int inputs = scorer.getNumInputs();
+		int outputs = scorer.getNumOutputs();
+		assertEquals(expected.columns(), outputs);
+
+		float[] batch = new float[features.rows() * inputs];
+		for (int r=0; r<features.rows(); r++){
+			for (int c=0; c<inputs; c++){
+				batch[r * inputs + c] = features.getFloat(r, c);
+			}
+		}
+
+		DenseScorer.Workspace workspace = scorer.createWorkspace();
+		float[] batchOutputs = new float[features.rows() * outputs];
+		scorer.score(batch, features.rows(), batchOutputs, workspace);
+
+		float[] input = new float[inputs];
+		float[] output = new float[outputs];
+		for (int r=0; r<features.rows(); r++){
+			System.arraycopy(batch, r * inputs, input, 0, inputs);
+			scorer.score(input, output, workspace);
+			for (int j=0; j<outputs; j++){
+				double value = expected.getDouble(r, j);
+				assertEquals("example " + r + ", output " + j, value, output[j], TOLERANCE);
+				assertEquals("example " + r + ", output " + j + " of the batch", value, batchOutputs[r * outputs + j], TOLERANCE);
+			}
+		}
+	}
+
+	private static void assertEquivalent(String hiddenActivation, String outputActivation, int outputs) throws OperatorException{
+		MultiLayerNetwork network = createNetwork(hiddenActivation, outputActivation, outputs);
+		INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(4).subi(2);
+		assertSameOutputs(DenseScorer.create(network, null, null), features, network.output(features));
+	}
+
+	@Test
+	public void testHiddenActivations() throws OperatorException{
+		for (String activation : DenseScorer.ACTIVATION_NAMES){
+			if (!"softmax".equals(activation)){
+				assertEquivalent(activation, "softmax", 3);
+			}
+		}
+	}
+
+	@Test
+	public void testOutputActivations() throws OperatorException{
+		for (String activation : DenseScorer.ACTIVATION_NAMES){
+			assertEquivalent("tanh", activation, "softmax".equals(activation) ? 3 : 1);
+		}
+	}
+
+	@Test
+	public void testSoftmaxOfLargeValues() throws OperatorException{
+		MultiLayerNetwork network = createNetwork("identity", "softmax", 3);
+		// large inputs, so exp of the outputs of the last layer would overflow without the shift by the largest value
+		INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(200).subi(100);
+		assertSameOutputs(DenseScorer.create(network, null, null), features, network.output(features));
+	}
+
+	@Test
+	public void testFoldedNormalization() throws OperatorException{
+		for (String activation : new String[]{"identity", "relu", "tanh", "sigmoid"}){
+
+			MultiLayerNetwork network = createNetwork(activation, "softmax", 3);
+
+			// features far from standardized, so an error in the fold shows up in the outputs
+			INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(100).subi(20);
+			INDArray means = features.mean(0);
+			INDArray stds = features.std(0);
+			INDArray expected = network.output(features.dup().subiRowVector(means).diviRowVector(stds));
+
+			assertSameOutputs(DenseScorer.create(network, means, stds), features, expected);
+		}
+	}
+
+	@Test
+	public void testSupported(){
+		for (String activation : DenseScorer.ACTIVATION_NAMES){
+			assertNull(activation, DenseScorer.checkSupported(createNetwork(activation, "softmax", 3)));
+		}
+		assertNotNull(DenseScorer.checkSupported(createNetwork("elu", "softmax", 3)));
+	}
+
+	@Test
+	public void testConvolutionNotSupported(){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(2)
+				.layer(0, new ConvolutionLayer.Builder(2, 2)
+						.nIn(1)
+						.nOut(2)
+						.activation("identity")
+						.build())
+				.layer(1, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(2)
+						.nOut(3)
+						.activation("softmax")
+						.build())
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		assertNotNull(DenseScorer.checkSupported(network));
+	}
+}
@@ -0,0 +1,152 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that folding the normalization into the first layer gives the same outputs
+ * for the raw features as the original network for the normalized features,
+ * in both precisions, with a tolerance fitting the precision.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@RunWith(Parameterized.class)
+public class FoldNormalizationTest {
+
+	private static final int FEATURES = 5;
+
+	private static final int EXAMPLES = 50;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> getPrecisions(){
+		return Arrays.asList(new Object[][]{
+				{"double", 1e-10}
+				,{"float", 1e-6}
+		});
+	}
+
+	private final DataBuffer.Type type;
+
+	private final double tolerance;
+
+	public FoldNormalizationTest(String precision, double tolerance){
+		this.type = Precision.getType(precision);
+		this.tolerance = tolerance;
+	}
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(type);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	private static MultiLayerNetwork createNetwork(String activation){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(2)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(FEATURES)
+						.nOut(4)
+						.activation(activation)
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(4)
+						.nOut(3)
+						.activation("softmax")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		return network;
+	}
+
+	private void assertFoldedEquivalent(String activation){
+
+		MultiLayerNetwork network = createNetwork(activation);
+
+		// features far from standardized, so an error in the fold shows up in the outputs
+		INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(100).subi(20);
+		INDArray means = features.mean(0);
+		INDArray stds = features.std(0);
+
+		INDArray expected = network.output(features.dup().subiRowVector(means).diviRowVector(stds));
+
+		assertTrue(MultiLayerNetModel.foldNormalization(network, means, stds));
+
+		INDArray actual = network.output(features);
+		double difference = Transforms.abs(actual.sub(expected), false).maxNumber().doubleValue();
+		assertEquals("largest difference of the outputs", 0, difference, tolerance);
+	}
+
+	@Test
+	public void testFoldIdentity(){
+		assertFoldedEquivalent("identity");
+	}
+
+	@Test
+	public void testFoldTanh(){
+		assertFoldedEquivalent("tanh");
+	}
+
+	@Test
+	public void testFoldRelu(){
+		assertFoldedEquivalent("relu");
+	}
+
+	@Test
+	public void testConvolutionNotFolded(){
+
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(2)
+				.layer(0, new ConvolutionLayer.Builder(2, 2)
+						.nIn(1)
+						.nOut(2)
+						.activation("identity")
+						.build())
+				.layer(1, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(2)
+						.nOut(3)
+						.activation("softmax")
+						.build())
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+
+		INDArray weights = network.getLayer(0).getParam("W").dup();
+		assertFalse(MultiLayerNetModel.foldNormalization(network, Nd4j.zeros(FEATURES), Nd4j.ones(FEATURES)));
+		assertEquals(0, Transforms.abs(network.getLayer(0).getParam("W").sub(weights), false).maxNumber().doubleValue(), 0);
+	}
+}
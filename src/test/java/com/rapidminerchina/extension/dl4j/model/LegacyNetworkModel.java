@@ -0,0 +1,49 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.util.List;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.rapidminer.example.Attribute;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.set.ExampleSetUtilities;
+import com.rapidminer.operator.OperatorException;
+import com.rapidminer.operator.learner.PredictionModel;
+
+/**
+ * The serializable fields of {@link MultiLayerNetModel} as of version 0.3.1, with the network
+ * in its Java serialization, to write fixtures of models stored with that version.
+ *
+ * The name of the class has as many characters as the name of {@link MultiLayerNetModel},
+ * so the name can be replaced in the written bytes without changing the length of any string.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class LegacyNetworkModel extends PredictionModel {
+
+	private static final long serialVersionUID = -8453900633508711805L;
+
+	List<String> names;
+
+	MultiLayerNetwork model;
+
+	List<String> featureNames;
+
+	INDArray columnMeans;
+
+	INDArray columnStds;
+
+	MultiLayerConfiguration configuration;
+
+	public LegacyNetworkModel(ExampleSet exampleSet) {
+		super(exampleSet, ExampleSetUtilities.SetsCompareOption.ALLOW_SUPERSET, ExampleSetUtilities.TypesCompareOption.ALLOW_SAME_PARENTS);
+	}
+
+	@Override
+	public ExampleSet performPrediction(ExampleSet exampleSet, Attribute predictedLabel) throws OperatorException {
+		throw new UnsupportedOperationException("A fixture of a stored model is not applied.");
+	}
+}
@@ -0,0 +1,196 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.ExampleSetFactory;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that a model is read back as it was written, untrained or trained in either precision,
+ * also if the network read is written again without being built,
+ * and that a model stored with version 0.3.1 is read with the network of its Java serialization.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@RunWith(Parameterized.class)
+public class MultiLayerNetModelSerializationTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> getPrecisions(){
+		return Arrays.asList(new Object[][]{
+				{"double"}
+				,{"float"}
+		});
+	}
+
+	private final DataBuffer.Type type;
+
+	public MultiLayerNetModelSerializationTest(String precision){
+		this.type = Precision.getType(precision);
+	}
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(type);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	private static ExampleSet createExampleSet(){
+		double[][] data = new double[10][5];
+		for (int r=0; r<data.length; r++){
+			for (int c=0; c<data[r].length; c++){
+				data[r][c] = r * c;
+			}
+		}
+		return ExampleSetFactory.createExampleSet(data);
+	}
+
+	private static List<String> createLayerNames(){
+		List<String> names = new ArrayList<String>();
+		names.add("hidden");
+		names.add("output");
+		return names;
+	}
+
+	private MultiLayerNetModel createTrainedModel(){
+		MultiLayerNetModel model = new MultiLayerNetModel(createExampleSet());
+		model.setPrecision(type);
+		model.setTrainedNetwork(NetworkFormatTest.createNetwork(), createLayerNames(), null);
+		return model;
+	}
+
+	private static byte[] write(Object object) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static MultiLayerNetModel read(byte[] bytes) throws IOException, ClassNotFoundException{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return (MultiLayerNetModel) in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void assertSameModel(MultiLayerNetModel expected, MultiLayerNetModel actual){
+		assertEquals(expected.getFeaturName(), actual.getFeaturName());
+		assertEquals(expected.getLayerNames(), actual.getLayerNames());
+		assertEquals(0, Transforms.abs(actual.getColumnMeans().sub(expected.getColumnMeans()), false).maxNumber().doubleValue(), 0);
+		assertEquals(0, Transforms.abs(actual.getColumnStds().sub(expected.getColumnStds()), false).maxNumber().doubleValue(), 0);
+	}
+
+	@Test
+	public void testUntrained() throws Exception{
+		MultiLayerNetModel model = new MultiLayerNetModel(createExampleSet());
+		model.setMultiLayerConfiguration(NetworkFormatTest.createNetwork().getLayerWiseConfigurations());
+
+		MultiLayerNetModel read = read(write(model));
+		assertEquals(model.getFeaturName(), read.getFeaturName());
+		assertEquals(model.getConfiguration().toJson(), read.getConfiguration().toJson());
+		assertNull(read.getModel());
+	}
+
+	@Test
+	public void testTrained() throws Exception{
+		MultiLayerNetModel model = createTrainedModel();
+
+		MultiLayerNetModel read = read(write(model));
+		assertSameModel(model, read);
+		assertEquals(type, read.getPrecision());
+		// the configuration is available before the network is built
+		assertEquals(model.getConfiguration().toJson(), read.getConfiguration().toJson());
+
+		MultiLayerNetwork network = read.getModel();
+		assertEquals(type, network.params().data().dataType());
+		NetworkFormatTest.assertSameNetwork(model.getModel(), network);
+	}
+
+	@Test
+	public void testStoredWrittenWithoutBuilding() throws Exception{
+		MultiLayerNetModel model = createTrainedModel();
+		byte[] bytes = write(model);
+
+		MultiLayerNetModel read = read(write(read(bytes)));
+		assertSameModel(model, read);
+		NetworkFormatTest.assertSameNetwork(model.getModel(), read.getModel());
+	}
+
+	@Test
+	public void testVersion031() throws Exception{
+		ExampleSet exampleSet = createExampleSet();
+		MultiLayerNetwork network = NetworkFormatTest.createNetwork();
+
+		LegacyNetworkModel legacy = new LegacyNetworkModel(exampleSet);
+		legacy.names = createLayerNames();
+		legacy.model = network;
+		legacy.featureNames = new MultiLayerNetModel(exampleSet).getFeaturName();
+		legacy.columnMeans = Nd4j.rand(1, 5, 1992);
+		legacy.columnStds = Nd4j.rand(1, 5, 1993).addi(1);
+		legacy.configuration = network.getLayerWiseConfigurations();
+
+		MultiLayerNetModel read = read(rename(write(legacy),
+				LegacyNetworkModel.class.getName(), MultiLayerNetModel.class.getName()));
+		assertEquals(legacy.featureNames, read.getFeaturName());
+		assertEquals(legacy.names, read.getLayerNames());
+		assertEquals(0, Transforms.abs(read.getColumnMeans().sub(legacy.columnMeans), false).maxNumber().doubleValue(), 0);
+		assertEquals(0, Transforms.abs(read.getColumnStds().sub(legacy.columnStds), false).maxNumber().doubleValue(), 0);
+		assertEquals(network.getLayerWiseConfigurations().toJson(), read.getConfiguration().toJson());
+		NetworkFormatTest.assertSameNetwork(network, read.getModel());
+
+		// written again in the current format
+		MultiLayerNetModel migrated = read(write(read));
+		assertSameModel(read, migrated);
+		NetworkFormatTest.assertSameNetwork(network, migrated.getModel());
+	}
+
+	/**
+	 * Replace a class name in serialized bytes by another name of the same length.
+	 */
+	private static byte[] rename(byte[] bytes, String from, String to){
+		assertEquals(from.length(), to.length());
+		byte[] source = from.getBytes();
+		byte[] target = to.getBytes();
+		byte[] result = bytes.clone();
+		int count = 0;
+		for (int i=0; i + source.length <= result.length; i++){
+			if (Arrays.equals(Arrays.copyOfRange(result, i, i + source.length), source)){
+				System.arraycopy(target, 0, result, i, target.length);
+				count++;
+			}
+		}
+		assertEquals("occurrences of the class name", 1, count);
+		return result;
+	}
+}
@@ -0,0 +1,163 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that a network written in the compact format is read back with the same configuration and parameters,
+ * in both precisions, also if the network read is written again without being built.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@RunWith(Parameterized.class)
+public class NetworkFormatTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> getPrecisions(){
+		return Arrays.asList(new Object[][]{
+				{"double"}
+				,{"float"}
+		});
+	}
+
+	private final DataBuffer.Type type;
+
+	public NetworkFormatTest(String precision){
+		this.type = Precision.getType(precision);
+	}
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(type);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	static MultiLayerNetwork createNetwork(){
+		MultiLayerConfiguration configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.list(2)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(5)
+						.nOut(4)
+						.activation("tanh")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(4)
+						.nOut(3)
+						.activation("softmax")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.build();
+		MultiLayerNetwork network = new MultiLayerNetwork(configuration);
+		network.init();
+		return network;
+	}
+
+	static void assertSameNetwork(MultiLayerNetwork expected, MultiLayerNetwork actual){
+		assertEquals(expected.getLayerWiseConfigurations().toJson(), actual.getLayerWiseConfigurations().toJson());
+		assertEquals(expected.params().length(), actual.params().length());
+		assertEquals(0, Transforms.abs(actual.params().sub(expected.params()), false).maxNumber().doubleValue(), 0);
+
+		INDArray features = Nd4j.rand(10, 5, 1992);
+		assertEquals(0, Transforms.abs(actual.output(features).sub(expected.output(features)), false).maxNumber().doubleValue(), 0);
+	}
+
+	private static byte[] write(MultiLayerNetwork network) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		NetworkFormat.write(network, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] write(NetworkFormat.StoredNetwork network) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		network.write(out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static NetworkFormat.StoredNetwork read(byte[] bytes) throws IOException{
+		return NetworkFormat.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException{
+		MultiLayerNetwork network = createNetwork();
+		NetworkFormat.StoredNetwork stored = read(write(network));
+
+		assertEquals(network.getLayerWiseConfigurations().toJson(), stored.getConfiguration().toJson());
+		MultiLayerNetwork built = stored.build();
+		assertEquals(type, built.params().data().dataType());
+		assertSameNetwork(network, built);
+	}
+
+	@Test
+	public void testStoredWrittenWithoutBuilding() throws IOException{
+		MultiLayerNetwork network = createNetwork();
+		byte[] bytes = write(network);
+
+		byte[] again = write(read(bytes));
+		assertArrayEquals(bytes, again);
+		assertSameNetwork(network, read(again).build());
+	}
+
+	@Test
+	public void testOtherMagic() throws IOException{
+		byte[] bytes = write(createNetwork());
+		bytes[0] ^= 1;
+		try {
+			read(bytes);
+			fail("a stream of another format is read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException{
+		byte[] bytes = write(createNetwork());
+		try {
+			read(Arrays.copyOf(bytes, bytes.length - 1));
+			fail("a truncated stream is read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
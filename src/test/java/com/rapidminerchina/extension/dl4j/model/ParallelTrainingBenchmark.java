@@ -0,0 +1,126 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rapidminer.example.Attributes;
+import com.rapidminer.example.ExampleSet;
+import com.rapidminer.example.ExampleSetFactory;
+import com.rapidminer.operator.OperatorException;
+
+/**
+ * Measures how the throughput of mini-batch training scales with the number of training workers,
+ * i.e. the replicas of the network trained in parallel with parameter averaging.
+ * One operation is one epoch over the examples, so the score times the number of examples is the examples per second.
+ *
+ * Run with gradle benchmark -Pinclude=ParallelTrainingBenchmark.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelTrainingBenchmark {
+
+	private static final int EXAMPLES = 20000;
+
+	private static final int FEATURES = 50;
+
+	private static final int CLASSES = 5;
+
+	@Param({"1", "2", "4", "8"})
+	public int workers;
+
+	@Param({"32", "128"})
+	public int batchSize;
+
+	@Param({"1", "4"})
+	public int averagingFrequency;
+
+	private ExampleSet exampleSet;
+
+	private MultiLayerConfiguration configuration;
+
+	@Setup
+	public void setUp(){
+
+		// the class is the index of the largest of the first features, so the network has something to learn
+		Random random = new Random(1992);
+		Object[][] data = new Object[EXAMPLES][FEATURES + 1];
+		for (int r=0; r<EXAMPLES; r++){
+			int label = 0;
+			for (int c=0; c<FEATURES; c++){
+				double value = random.nextGaussian();
+				data[r][c] = value;
+				if (c < CLASSES && value > (Double) data[r][label]){
+					label = c;
+				}
+			}
+			data[r][FEATURES] = "class" + label;
+		}
+		exampleSet = ExampleSetFactory.createExampleSet(data);
+		Attributes attributes = exampleSet.getAttributes();
+		attributes.setLabel(attributes.get("att" + (FEATURES + 1)));
+
+		configuration = new NeuralNetConfiguration.Builder()
+				.seed(1992)
+				.optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+				.iterations(1)
+				.learningRate(0.1)
+				.list(3)
+				.layer(0, new DenseLayer.Builder()
+						.nIn(FEATURES)
+						.nOut(100)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(1, new DenseLayer.Builder()
+						.nIn(100)
+						.nOut(100)
+						.activation("relu")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.layer(2, new OutputLayer.Builder(LossFunction.MCXENT)
+						.nIn(100)
+						.nOut(CLASSES)
+						.activation("softmax")
+						.weightInit(WeightInit.XAVIER)
+						.build())
+				.build();
+	}
+
+	@Benchmark
+	public MultiLayerNetModel trainEpoch() throws OperatorException{
+		MultiLayerNetModel model = new MultiLayerNetModel(exampleSet);
+		model.setBatchSize(batchSize);
+		model.setEpochs(1);
+		model.setTrainingWorkers(workers);
+		model.setAveragingFrequency(averagingFrequency);
+		model.train(exampleSet, configuration.clone(), true, true, Arrays.asList("hidden1", "hidden2", "output"));
+		return model;
+	}
+}
@@ -0,0 +1,155 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that a quantized array is restored within half of the scale of each channel,
+ * with channels along either dimension, with one scale per channel or one for the whole array,
+ * and that an array stored with floats is restored as it was, in both precisions.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+@RunWith(Parameterized.class)
+public class QuantizedArrayTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> getPrecisions(){
+		return Arrays.asList(new Object[][]{
+				{"double"}
+				,{"float"}
+		});
+	}
+
+	private final DataBuffer.Type type;
+
+	public QuantizedArrayTest(String precision){
+		this.type = Precision.getType(precision);
+	}
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(type);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	/**
+	 * A matrix whose columns and rows have very different ranges, so a scale of the wrong channel shows up.
+	 */
+	private static INDArray createMatrix(){
+		INDArray array = Nd4j.rand(7, 5, 1992).subi(0.5);
+		for (int i=0; i<array.rows(); i++){
+			for (int j=0; j<array.columns(); j++){
+				array.putScalar(new int[]{i, j}, array.getDouble(i, j) * (j + 1) * (i + 1));
+			}
+		}
+		return array;
+	}
+
+	/**
+	 * Check that each value is restored within half of the scale of its channel.
+	 */
+	private static void assertWithinHalfScale(INDArray array, QuantizedArray quantized, int channelAxis){
+
+		INDArray restored = quantized.dequantize();
+		assertArrayEquals(array.shape(), restored.shape());
+
+		float[] scales = quantized.getScales();
+		for (int i=0; i<array.rows(); i++){
+			for (int j=0; j<array.columns(); j++){
+				float scale = scales[scales.length == 1 ? 0 : (channelAxis == 1 ? j : i)];
+				// the rounding to the nearest integer, plus the rounding of the scale to float
+				double tolerance = scale / 2 * (1 + 1e-6);
+				assertEquals("value at " + i + ", " + j, array.getDouble(i, j), restored.getDouble(i, j), tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void testColumnsPerChannel(){
+		INDArray array = createMatrix();
+		QuantizedArray quantized = new QuantizedArray(array, 1, true);
+		assertTrue(quantized.isQuantized());
+		assertEquals(array.columns(), quantized.getScales().length);
+		assertWithinHalfScale(array, quantized, 1);
+	}
+
+	@Test
+	public void testRowsPerChannel(){
+		INDArray array = createMatrix();
+		QuantizedArray quantized = new QuantizedArray(array, 0, true);
+		assertEquals(array.rows(), quantized.getScales().length);
+		assertWithinHalfScale(array, quantized, 0);
+	}
+
+	@Test
+	public void testOneScale(){
+		INDArray array = createMatrix();
+		QuantizedArray quantized = new QuantizedArray(array, 1, false);
+		float[] scales = quantized.getScales();
+		for (int c=1; c<scales.length; c++){
+			assertEquals(scales[0], scales[c], 0);
+		}
+		assertWithinHalfScale(array, quantized, 1);
+	}
+
+	@Test
+	public void testLargestValueRestored(){
+		INDArray array = createMatrix();
+		QuantizedArray quantized = new QuantizedArray(array, 1, true);
+		byte[] values = quantized.getValues();
+		int largest = 0;
+		for (byte value : values){
+			largest = Math.max(largest, Math.abs(value));
+		}
+		assertEquals(QuantizedArray.RANGE, largest);
+	}
+
+	@Test
+	public void testZeroChannel(){
+		INDArray array = createMatrix();
+		for (int i=0; i<array.rows(); i++){
+			array.putScalar(new int[]{i, 2}, 0);
+		}
+		QuantizedArray quantized = new QuantizedArray(array, 1, true);
+		assertEquals(1, quantized.getScales()[2], 0);
+		assertWithinHalfScale(array, quantized, 1);
+	}
+
+	@Test
+	public void testFloats(){
+		INDArray array = createMatrix();
+		QuantizedArray stored = new QuantizedArray(array);
+		assertFalse(stored.isQuantized());
+		assertEquals(4L * array.length(), stored.getBytes());
+
+		INDArray restored = stored.dequantize();
+		for (int i=0; i<array.rows(); i++){
+			for (int j=0; j<array.columns(); j++){
+				assertEquals(array.getDouble(i, j), restored.getDouble(i, j), Math.ulp((float) array.getDouble(i, j)));
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.rapidminer.operator.OperatorException;
+import com.rapidminerchina.extension.dl4j.data.Precision;
+
+/**
+ * Checks that the scorer with integer kernels gives the outputs of the plain Java scorer of the original network
+ * within the error of the quantization, with and without the normalization of the features.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class QuantizedScorerTest {
+
+	private static final int FEATURES = 5;
+
+	private static final int EXAMPLES = 200;
+
+	/**
+	 * The largest difference of an output, i.e. of a probability of the softmax.
+	 */
+	private static final double TOLERANCE = 0.01;
+
+	@Before
+	public void enterPrecision() throws Exception{
+		Precision.enter(DataBuffer.Type.DOUBLE);
+	}
+
+	@After
+	public void leavePrecision(){
+		Precision.leave();
+	}
+
+	/**
+	 * Quantize the weights of a network per output unit and calibrate the scales of the inputs of its layers
+	 * on the given normalized features, as {@link QuantizedNetModel} does.
+	 */
+	private static QuantizedScorer quantize(MultiLayerNetwork network, INDArray normalized, float[] means, float[] stds){
+
+		int numLayers = network.getnLayers();
+		int[] sizes = new int[numLayers + 1];
+		byte[][] weights = new byte[numLayers][];
+		float[][] weightScales = new float[numLayers][];
+		float[][] biases = new float[numLayers][];
+		int[] activations = new int[numLayers];
+		float[] inputScales = new float[numLayers];
+
+		List<INDArray> inputs = network.feedForward(normalized, false);
+		for (int l=0; l<numLayers; l++){
+			QuantizedArray w = new QuantizedArray(network.getLayer(l).getParam("W"), 1, true);
+			QuantizedArray b = new QuantizedArray(network.getLayer(l).getParam("b"));
+			sizes[l] = w.getShape()[0];
+			sizes[l + 1] = w.getShape()[1];
+			weights[l] = w.getValues();
+			weightScales[l] = w.getScales();
+			biases[l] = b.getFloats();
+			activations[l] = DenseScorer.getActivation(network.getLayer(l).conf().getLayer().getActivationFunction());
+
+			double largest = 0;
+			INDArray input = inputs.get(l);
+			for (int k=0; k<input.length(); k++){
+				largest = Math.max(largest, Math.abs(input.getDouble(k)));
+			}
+			inputScales[l] = (float) (largest / QuantizedArray.RANGE);
+		}
+
+		return new QuantizedScorer(sizes, weights, weightScales, biases, activations, inputScales, means, stds);
+	}
+
+	private static void assertClose(DenseScorer expected, DenseScorer actual, INDArray features){
+
+		int outputs = expected.getNumOutputs();
+		float[] input = new float[FEATURES];
+		float[] expectedOutput = new float[outputs];
+		float[] actualOutput = new float[outputs];
+		DenseScorer.Workspace expectedWorkspace = expected.createWorkspace();
+		DenseScorer.Workspace actualWorkspace = actual.createWorkspace();
+
+		for (int r=0; r<features.rows(); r++){
+			for (int c=0; c<FEATURES; c++){
+				input[c] = features.getFloat(r, c);
+			}
+			expected.score(input, expectedOutput, expectedWorkspace);
+			actual.score(input, actualOutput, actualWorkspace);
+			for (int j=0; j<outputs; j++){
+				assertEquals("example " + r + ", output " + j, expectedOutput[j], actualOutput[j], TOLERANCE);
+			}
+		}
+	}
+
+	@Test
+	public void testWithoutNormalization() throws OperatorException{
+		MultiLayerNetwork network = DenseScorerTest.createNetwork("tanh", "softmax", 3);
+		INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(4).subi(2);
+
+		QuantizedScorer quantized = quantize(network, features, null, null);
+		assertClose(DenseScorer.create(network, null, null), quantized, features);
+	}
+
+	@Test
+	public void testWithNormalization() throws OperatorException{
+		MultiLayerNetwork network = DenseScorerTest.createNetwork("relu", "softmax", 3);
+		INDArray features = Nd4j.rand(EXAMPLES, FEATURES, 1992).muli(100).subi(20);
+		INDArray means = features.mean(0);
+		INDArray stds = features.std(0);
+
+		float[] meanValues = new float[FEATURES];
+		float[] stdValues = new float[FEATURES];
+		for (int i=0; i<FEATURES; i++){
+			meanValues[i] = means.getFloat(i);
+			stdValues[i] = stds.getFloat(i);
+		}
+
+		INDArray normalized = features.dup().subiRowVector(means).diviRowVector(stds);
+		QuantizedScorer quantized = quantize(network, normalized, meanValues, stdValues);
+		assertClose(DenseScorer.create(network, means, stds), quantized, features);
+	}
+}
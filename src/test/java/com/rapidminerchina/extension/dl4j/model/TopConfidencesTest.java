@@ -0,0 +1,94 @@
+package com.rapidminerchina.extension.dl4j.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the selection of the highest confidences by {@link MultiLayerNetModel#insertTop(double, int, int, int[], double[])}
+ * against a full sort of the confidences, in which equal confidences keep the order of their labels.
+ *
+ * @author Anson Chen
+ * @version 0.4
+ */
+public class TopConfidencesTest {
+
+	private static void assertTop(final double[] confidences, int k){
+
+		int[] topIndices = new int[k];
+		double[] topValues = new double[k];
+		int count = 0;
+		for (int i=0; i<confidences.length; i++){
+			count = MultiLayerNetModel.insertTop(confidences[i], i, count, topIndices, topValues);
+		}
+
+		// Arrays.sort of objects is stable, so equal confidences stay in the order of their labels
+		Integer[] sorted = new Integer[confidences.length];
+		for (int i=0; i<sorted.length; i++){
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(confidences[b], confidences[a]);
+			}
+		});
+
+		int expectedCount = Math.min(k, confidences.length);
+		int[] expectedIndices = new int[expectedCount];
+		double[] expectedValues = new double[expectedCount];
+		for (int j=0; j<expectedCount; j++){
+			expectedIndices[j] = sorted[j];
+			expectedValues[j] = confidences[sorted[j]];
+		}
+
+		assertEquals(expectedCount, count);
+		assertArrayEquals(expectedIndices, Arrays.copyOf(topIndices, count));
+		assertArrayEquals(expectedValues, Arrays.copyOf(topValues, count), 0);
+	}
+
+	@Test
+	public void testRandomConfidences(){
+		Random random = new Random(1992);
+		for (int n=0; n<100; n++){
+			double[] confidences = new double[1 + random.nextInt(20)];
+			for (int i=0; i<confidences.length; i++){
+				confidences[i] = random.nextDouble();
+			}
+			assertTop(confidences, 1 + random.nextInt(confidences.length));
+		}
+	}
+
+	@Test
+	public void testTies(){
+		assertTop(new double[]{0.2, 0.3, 0.2, 0.3}, 1);
+		assertTop(new double[]{0.2, 0.3, 0.2, 0.3}, 2);
+		assertTop(new double[]{0.2, 0.3, 0.2, 0.3}, 3);
+		assertTop(new double[]{0.25, 0.25, 0.25, 0.25}, 2);
+	}
+
+	@Test
+	public void testRandomTies(){
+		Random random = new Random(1992);
+		for (int n=0; n<100; n++){
+			double[] confidences = new double[1 + random.nextInt(20)];
+			for (int i=0; i<confidences.length; i++){
+				confidences[i] = random.nextInt(4) / 4.0;
+			}
+			assertTop(confidences, 1 + random.nextInt(confidences.length));
+		}
+	}
+
+	@Test
+	public void testAllClasses(){
+		assertTop(new double[]{0.1, 0.6, 0.3}, 3);
+		assertTop(new double[]{0.1, 0.6, 0.3}, 5);
+		assertTop(new double[]{0.5, 0.5}, 4);
+	}
+}